@@ -1,4 +1,5 @@
-from flask import Flask, request, jsonify
+from flask import Flask, request, jsonify, Response, stream_with_context
+import json
 import ollama
 import time
 from rag_utils import RagEngine
@@ -48,7 +49,10 @@ def generate_response():
         context = ""
         # We always try to get context, but maybe use a generic query if just image?
         # Actually, user message is usually present with image.
-        if user_message:
+        if 'context' in data:
+            # Spring already retrieved it from its own index
+            context = data.get('context') or ""
+        elif user_message:
             start_rag = time.time()
             context = rag_engine.get_context(user_message)
             print(f"⏱️ RAG Context Retrieval took: {time.time() - start_rag:.2f} seconds")
@@ -113,6 +117,11 @@ def generate_response():
 
         full_prompt += f"User: {current_instruction}\nAssistant:"
 
+        # 3b. Streaming mode: relay tokens to Java as NDJSON lines as Ollama produces them
+        if data.get('stream'):
+            return Response(stream_with_context(stream_tokens(full_prompt, image_data)),
+                            mimetype='application/x-ndjson')
+
         print("--- FINAL PROMPT SENT TO LLM ---")
         print(full_prompt)
         print("--------------------------------")
@@ -145,6 +154,50 @@ def generate_response():
         print(f"Error: {e}")
         return jsonify({"response": "Error processing your request with LLaVA."}), 500
 
+def stream_tokens(full_prompt, image_data):
+    """Yields one JSON line per Ollama chunk: {"token": "..."} and finally {"done": true}."""
+    msg_payload = {
+        'role': 'user',
+        'content': full_prompt
+    }
+    if image_data:
+        msg_payload['images'] = [image_data]
+
+    print("⏳ Streaming request to Ollama...")
+    start_llm = time.time()
+    first_token_at = None
+    try:
+        for chunk in ollama.chat(model='llava', messages=[msg_payload], stream=True):
+            token = chunk['message']['content']
+            if token:
+                if first_token_at is None:
+                    first_token_at = time.time()
+                    print(f"⏱️ Ollama first token after: {first_token_at - start_llm:.2f} seconds")
+                yield json.dumps({"token": token}) + "\n"
+        print(f"⏱️ Ollama streamed inference took: {time.time() - start_llm:.2f} seconds")
+        yield json.dumps({"done": True}) + "\n"
+    except GeneratorExit:
+        # Java side closed the connection (request cancelled); stop pulling tokens from Ollama
+        print("Stream closed by client, stopping generation.")
+        raise
+    except Exception as e:
+        print(f"Streaming error: {e}")
+        yield json.dumps({"error": "Error processing your request with LLaVA."}) + "\n"
+
+@app.route('/embed', methods=['POST'])
+def embed():
+    """Embeds texts for the Java retrieval index: {"texts": [...]} -> {"embeddings": [[...]]}."""
+    try:
+        texts = request.json.get('texts', [])
+        return jsonify({"embeddings": rag_engine.embed(texts)})
+    except Exception as e:
+        return jsonify({"error": str(e)}), 500
+
+@app.route('/health', methods=['GET'])
+def health():
+    """Liveness probe for the Java client's circuit breaker."""
+    return jsonify({"status": "ok"})
+
 @app.route('/reload-docs', methods=['POST'])
 def reload_docs():
     """Endpoint to trigger re-indexing of documents."""
@@ -65,6 +65,10 @@ class RagEngine:
             print(f"Error retrieving context: {e}")
             return ""
 
+    def embed(self, texts):
+        """Embeds texts with the same model used for the documents."""
+        return self.embeddings.embed_documents(texts)
+
     def reload(self):
         """Manually re-ingest data (useful if new files are added)."""
         self.ingest_data()
@@ -0,0 +1,128 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import com.collegeproject.chatgptclone.retrieval.DocumentIngestionService;
+import com.collegeproject.chatgptclone.retrieval.RetrievalService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Test data and stubbed collaborators shared by the benchmarks: a ChatService wired like
+ * the application, but with an in-memory repository and an LLM that answers immediately.
+ */
+final class BenchmarkFixtures {
+
+    static final String REPLY = "Spring Boot is an opinionated framework on top of Spring that auto-configures "
+            + "an application from the libraries on its classpath and runs it with an embedded server.";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * The application's ObjectMapper configuration (Java time module, ISO dates).
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * A conversation of alternating user/bot messages; every tenth user message carries
+     * a legacy inline image of {@code imageBytes} random bytes when {@code withImages} is set.
+     */
+    static List<ChatMessage> history(int size, boolean withImages, int imageBytes) {
+        Random random = new Random(42);
+        byte[] image = new byte[imageBytes];
+        random.nextBytes(image);
+        String imageBase64 = Base64.getEncoder().encodeToString(image);
+        List<ChatMessage> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean user = i % 2 == 0;
+            ChatMessage message = new ChatMessage("student-1", user ? "user" : "bot",
+                    user ? "Question " + i + ": what does @Autowired do in a Spring controller?" : REPLY);
+            message.setId(Integer.toHexString(0x10000000 + i));
+            if (withImages && user && i % 10 == 0) {
+                message.setImageBase64(imageBase64);
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * ChatService with the real in-process components and stubbed I/O: saves are no-ops,
+     * history reads return {@code history}, and the (streamed) /predict answers with {@link #REPLY}.
+     */
+    static ChatService chatService(List<ChatMessage> history) {
+        ChatRepository repository = stubRepository(history);
+        LlmClient llmClient = new LlmClient(objectMapper(), "http://127.0.0.1:5000", Duration.ofSeconds(1),
+                Duration.ofSeconds(1), false, 2, 3, Duration.ofSeconds(30), Duration.ZERO, Duration.ofSeconds(1)) {
+            @Override
+            public String predictStream(Map<String, Object> requestBody, String affinityKey,
+                    Consumer<String> onToken, Consumer<Runnable> registerAbort) {
+                onToken.accept(REPLY);
+                return null;
+            }
+        };
+        LlmResponseCache responseCache = new LlmResponseCache(false, 1, Duration.ofMinutes(1), 12);
+        DocumentIngestionService ingestion = new DocumentIngestionService(llmClient, Path.of("target/jmh-docs"),
+                Path.of("target/jmh-docs/chunks.idx"), 1000, 200, 64, 1, 16, 200);
+        RetrievalService retrieval = new RetrievalService(llmClient, ingestion, responseCache,
+                new SimpleAsyncTaskExecutor(), false, 3, 64, false, 10, 60, 1.2f, 0.75f, Duration.ofSeconds(1), 100);
+        return new ChatService(repository,
+                new ChatMessageWriter(repository, false, false, 100, Duration.ofMillis(200), 10000,
+                        Duration.ofMillis(50)),
+                llmClient,
+                new LlmAdmissionScheduler(1024, 100000, 100000),
+                new CancellationRegistry(Duration.ofMinutes(10), 10000, new InMemoryCancellationBackplane(), "bench"),
+                new ImageStore(null),
+                new RecentConversationCache(repository, 5, 10000),
+                responseCache,
+                retrieval,
+                new ChatMetrics(new SimpleMeterRegistry()),
+                new LlmRequestCoalescer(true, 12),
+                null, // The benchmarked send path never reads the archive
+                new ImagePreprocessor(true, false, 672, 1344, true, 0.85f, 1, 32, Duration.ofSeconds(10)));
+    }
+
+    /**
+     * In-memory ChatRepository: save/insert return their argument, finders return {@code history}.
+     */
+    static ChatRepository stubRepository(List<ChatMessage> history) {
+        return (ChatRepository) Proxy.newProxyInstance(ChatRepository.class.getClassLoader(),
+                new Class<?>[] {ChatRepository.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("save") || name.equals("insert")) {
+                        return args[0];
+                    }
+                    if (name.startsWith("find") && List.class.isAssignableFrom(method.getReturnType())) {
+                        return history;
+                    }
+                    if (method.getReturnType() == boolean.class) {
+                        return false;
+                    }
+                    if (name.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (name.equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    if (name.equals("toString")) {
+                        return "StubChatRepository";
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,66 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChatMessage to/from BSON Document with Spring Data's MappingMongoConverter, the mapping
+ * every save and every history read goes through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMessageBsonBenchmark {
+
+    private MappingMongoConverter converter;
+    private ChatMessage message;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        // Same setup as Spring Boot's auto-configuration, minus the database
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        message = BenchmarkFixtures.history(2, false, 0).get(1);
+        message.setImageId("5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef");
+        document = new Document();
+        converter.write(message, document);
+    }
+
+    @Benchmark
+    public Document write() {
+        Document target = new Document();
+        converter.write(message, target);
+        return target;
+    }
+
+    @Benchmark
+    public ChatMessage read() {
+        return converter.read(ChatMessage.class, document);
+    }
+}
@@ -0,0 +1,51 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of chat history as returned by GET /api/chat/history, with and
+ * without legacy inline images.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMessageJsonBenchmark {
+
+    @Param({"100", "1000"})
+    int historySize;
+
+    @Param({"false", "true"})
+    boolean withImages;
+
+    private ObjectMapper objectMapper;
+    private List<ChatMessage> history;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkFixtures.objectMapper();
+        history = BenchmarkFixtures.history(historySize, withImages, 64 * 1024);
+    }
+
+    @Benchmark
+    public byte[] serializeHistory() throws Exception {
+        return objectMapper.writeValueAsBytes(history);
+    }
+}
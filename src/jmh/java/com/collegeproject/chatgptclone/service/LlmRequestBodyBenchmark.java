@@ -0,0 +1,48 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the /predict payload (history mapping + body map) that getResponseFromLLM sends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LlmRequestBodyBenchmark {
+
+    @Param({"5", "50"})
+    int historySize;
+
+    private ChatService chatService;
+    private List<ChatMessage> history;
+
+    @Setup
+    public void setUp() {
+        history = BenchmarkFixtures.history(historySize, false, 0);
+        chatService = BenchmarkFixtures.chatService(history);
+    }
+
+    @Benchmark
+    public Map<String, Object> buildRequestBody() {
+        return chatService.buildLlmRequestBody(history, "What is dependency injection?", null,
+                "Dependency injection is a design pattern...");
+    }
+}
@@ -0,0 +1,41 @@
+package com.collegeproject.chatgptclone.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end ChatService.sendMessage with MongoDB and the LLM stubbed out: measures the
+ * Spring-side overhead of one request (admission, cancellation bookkeeping, context,
+ * request building, metrics) without any I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendMessageBenchmark {
+
+    private ChatService chatService;
+
+    @Setup
+    public void setUp() {
+        chatService = BenchmarkFixtures.chatService(BenchmarkFixtures.history(5, false, 0));
+    }
+
+    @Benchmark
+    public String sendMessage() {
+        return chatService.sendMessage("student-1", "What is the difference between @Component and @Service?",
+                null, (ImageUpload) null);
+    }
+}
@@ -0,0 +1,87 @@
+package com.collegeproject.chatgptclone.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A latency to simulate, parsed from a short spec:
+ * - {@code fixed:500ms}
+ * - {@code uniform:200ms..2s}
+ * - {@code exp:800ms} (exponential with this mean)
+ * - {@code lognormal:800ms,0.5} (this median, sigma 0.5: a long right tail like real LLM calls)
+ * Durations are a number followed by {@code ms} or {@code s}.
+ */
+public final class LatencyDistribution {
+
+    private enum Kind { FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL }
+
+    private final Kind kind;
+    private final double a; // millis: fixed value, lower bound, mean or median
+    private final double b; // upper bound (uniform) or sigma (lognormal)
+    private final String spec;
+
+    private LatencyDistribution(Kind kind, double a, double b, String spec) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+        this.spec = spec;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        if (parts.length == 1) {
+            return new LatencyDistribution(Kind.FIXED, millis(parts[0]), 0, spec);
+        }
+        String args = parts[1];
+        switch (parts[0].toLowerCase()) {
+            case "fixed":
+                return new LatencyDistribution(Kind.FIXED, millis(args), 0, spec);
+            case "uniform": {
+                String[] range = args.split("\\.\\.");
+                if (range.length != 2) {
+                    throw new IllegalArgumentException("Expected uniform:<min>..<max>, got " + spec);
+                }
+                return new LatencyDistribution(Kind.UNIFORM, millis(range[0]), millis(range[1]), spec);
+            }
+            case "exp":
+                return new LatencyDistribution(Kind.EXPONENTIAL, millis(args), 0, spec);
+            case "lognormal": {
+                String[] values = args.split(",");
+                double sigma = values.length > 1 ? Double.parseDouble(values[1].trim()) : 0.5;
+                return new LatencyDistribution(Kind.LOGNORMAL, millis(values[0]), sigma, spec);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        }
+    }
+
+    /**
+     * Parses {@code 250ms}, {@code 2s} or a plain number of milliseconds.
+     */
+    static double millis(String value) {
+        String v = value.trim().toLowerCase();
+        if (v.endsWith("ms")) {
+            return Double.parseDouble(v.substring(0, v.length() - 2));
+        }
+        if (v.endsWith("s")) {
+            return Double.parseDouble(v.substring(0, v.length() - 1)) * 1000;
+        }
+        return Double.parseDouble(v);
+    }
+
+    public Duration sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double value = switch (kind) {
+            case FIXED -> a;
+            case UNIFORM -> a + random.nextDouble() * (b - a);
+            case EXPONENTIAL -> -a * Math.log(1 - random.nextDouble());
+            case LOGNORMAL -> a * Math.exp(b * random.nextGaussian());
+        };
+        return Duration.ofNanos((long) (Math.max(0, value) * 1_000_000));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
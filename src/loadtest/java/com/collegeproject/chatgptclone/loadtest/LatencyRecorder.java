@@ -0,0 +1,73 @@
+package com.collegeproject.chatgptclone.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and outcomes of one operation ("send", "history", ...) over the measured
+ * part of a run. Samples are kept in full (a long per request), so percentiles are exact.
+ */
+final class LatencyRecorder {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count;
+    private final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * @param reason e.g. "HTTP 429" or an exception class name.
+     */
+    void fail(String reason) {
+        failures.computeIfAbsent(reason, r -> new AtomicLong()).incrementAndGet();
+    }
+
+    String name() {
+        return name;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    long failureCount() {
+        return failures.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    /**
+     * One report line: throughput, percentiles in milliseconds, and failures by reason.
+     */
+    synchronized String report(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        StringBuilder line = new StringBuilder(String.format("%-18s %8d ok %9.1f/s", name, count,
+                seconds > 0 ? count / seconds : 0));
+        if (count > 0) {
+            line.append(String.format("   p50 %8.1f  p90 %8.1f  p99 %8.1f  p99.9 %8.1f  max %8.1f ms",
+                    millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 0.999),
+                    sorted[count - 1] / 1e6));
+        }
+        if (!failures.isEmpty()) {
+            line.append("   failed ").append(new TreeMap<>(Map.copyOf(failures)));
+        }
+        return line.toString();
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
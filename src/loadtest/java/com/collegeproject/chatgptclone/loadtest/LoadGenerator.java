@@ -0,0 +1,292 @@
+package com.collegeproject.chatgptclone.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load against a running app: {@code users} virtual users each log in once,
+ * then repeat "think, then send a message (or fetch the history)" until the run ends, so
+ * at most one request per user is outstanding, like real students in the chat UI.
+ * - A share of the messages is cancelled {@code cancelAfter} after it was sent (POST /cancel).
+ * - Messages go to /api/chat/send, or to /api/chat/stream when {@code stream} is set
+ *   (then time to first token is reported too).
+ * - Samples from the warm-up period are discarded.
+ */
+final class LoadGenerator {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    private final URI baseUri;
+    private final Settings settings;
+    private final AtomicInteger messageCounter = new AtomicInteger();
+    private final Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+    private volatile long measureFromNanos;
+
+    LoadGenerator(URI baseUri, Settings settings) {
+        this.baseUri = baseUri;
+        this.settings = settings;
+        for (String name : List.of("login", "send", "send (cancelled)", "stream", "stream first token",
+                "stream (cancelled)", "history")) {
+            recorders.put(name, new LatencyRecorder(name));
+        }
+    }
+
+    /**
+     * What to run; durations and ratios as given on the command line.
+     *
+     * @param prompts   Number of distinct prompts to cycle through, or 0 for a unique prompt per
+     *                  message (no LLM response cache hits).
+     * @param tokenAuth Authenticate with a bearer token from /api/auth/token instead of a session.
+     */
+    record Settings(int users, Duration duration, Duration warmup, LatencyDistribution thinkTime,
+            double historyRatio, double cancelRatio, Duration cancelAfter, boolean stream, int prompts,
+            String userPrefix, String password, boolean tokenAuth) {
+    }
+
+    /**
+     * Runs the load and returns the report.
+     */
+    String run() throws InterruptedException {
+        System.out.println("Load test against " + baseUri + ": " + settings);
+        long start = System.nanoTime();
+        measureFromNanos = start + settings.warmup().toNanos();
+        long endNanos = measureFromNanos + settings.duration().toNanos();
+
+        List<Thread> users = new ArrayList<>();
+        for (int i = 0; i < settings.users(); i++) {
+            String username = settings.userPrefix() + i;
+            users.add(Thread.ofVirtual().name("load-user-" + i).start(() -> runUser(username, endNanos)));
+        }
+        for (Thread user : users) {
+            user.join();
+        }
+        double seconds = settings.duration().toNanos() / 1e9;
+        StringBuilder report = new StringBuilder("Results over " + settings.duration().toSeconds()
+                + " s (after " + settings.warmup().toSeconds() + " s warm-up), " + settings.users() + " users:\n");
+        recorders.values().stream()
+                .filter(r -> r.count() > 0 || r.failureCount() > 0)
+                .forEach(r -> report.append("  ").append(r.report(seconds)).append('\n'));
+        return report.toString();
+    }
+
+    private void runUser(String username, long endNanos) {
+        Credentials session;
+        try {
+            session = login(username);
+        } catch (Exception e) {
+            recorders.get("login").fail(reason(e));
+            System.out.println(username + " could not log in: " + e);
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < endNanos) {
+            try {
+                Thread.sleep(settings.thinkTime().sample());
+                if (System.nanoTime() >= endNanos) {
+                    break;
+                }
+                if (random.nextDouble() < settings.historyRatio()) {
+                    history(session);
+                } else {
+                    sendMessage(session, random.nextDouble() < settings.cancelRatio());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Signs the user up (ignored if it exists) and logs in with the form login, or gets a token.
+     *
+     * @return The header that authenticates the user's requests.
+     */
+    private Credentials login(String username) throws Exception {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(settings.password(), StandardCharsets.UTF_8);
+        httpClient.send(formPost("/signup", form), HttpResponse.BodyHandlers.discarding());
+
+        long start = System.nanoTime();
+        if (settings.tokenAuth()) {
+            HttpResponse<byte[]> response = httpClient.send(jsonPost("/api/auth/token", null,
+                    Map.of("username", username, "password", settings.password())),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("token request returned HTTP " + response.statusCode());
+            }
+            String token = objectMapper.readTree(response.body()).path("token").asText();
+            record("login", start, System.nanoTime());
+            return new Credentials("Authorization", "Bearer " + token);
+        }
+        HttpResponse<Void> response = httpClient.send(formPost("/login", form), HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        String cookie = response.headers().allValues("Set-Cookie").stream()
+                .filter(c -> c.startsWith("JSESSIONID="))
+                .map(c -> c.split(";", 2)[0])
+                .findFirst()
+                .orElse(null);
+        if (response.statusCode() != 302 || location.contains("error") || cookie == null) {
+            throw new IllegalStateException("login returned HTTP " + response.statusCode() + " " + location);
+        }
+        record("login", start, System.nanoTime());
+        return new Credentials("Cookie", cookie);
+    }
+
+    private void history(Credentials session) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(get("/api/chat/history", session),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            finish("history", start, response.statusCode());
+        } catch (Exception e) {
+            fail("history", start, reason(e));
+        }
+    }
+
+    private void sendMessage(Credentials session, boolean cancel) throws InterruptedException {
+        String requestId = UUID.randomUUID().toString();
+        int n = messageCounter.incrementAndGet();
+        String message = "Load test question " + (settings.prompts() > 0 ? n % settings.prompts() : n)
+                + ": how does Spring Boot pick the embedded server?";
+        Map<String, String> payload = Map.of("message", message, "requestId", requestId);
+        String operation = settings.stream() ? "stream" : "send";
+        if (cancel) {
+            operation += " (cancelled)";
+            Thread.ofVirtual().start(() -> cancelLater(session, requestId));
+        }
+        long start = System.nanoTime();
+        try {
+            if (settings.stream()) {
+                stream(session, payload, operation, start);
+            } else {
+                HttpResponse<String> response = httpClient.send(jsonPost("/api/chat/send", session, payload),
+                        HttpResponse.BodyHandlers.ofString());
+                finish(operation, start, response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            fail(operation, start, reason(e));
+        }
+    }
+
+    /**
+     * Reads the SSE stream to the end, recording the time to the first "token" event.
+     */
+    private void stream(Credentials session, Map<String, String> payload, String operation, long start)
+            throws Exception {
+        HttpResponse<InputStream> response = httpClient.send(jsonPost("/api/chat/stream", session, payload),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(),
+                StandardCharsets.UTF_8))) {
+            if (response.statusCode() != 200) {
+                finish(operation, start, response.statusCode());
+                return;
+            }
+            boolean firstToken = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (firstToken && line.startsWith("event:token")) {
+                    firstToken = false;
+                    record("stream first token", start, System.nanoTime());
+                }
+            }
+        }
+        record(operation, start, System.nanoTime());
+    }
+
+    private void cancelLater(Credentials session, String requestId) {
+        try {
+            Thread.sleep(settings.cancelAfter());
+            httpClient.send(jsonPost("/api/chat/cancel", session, Map.of("requestId", requestId)),
+                    HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            // The request may have finished already; nothing to record
+        }
+    }
+
+    private void finish(String operation, long start, int status) {
+        if (status == 200) {
+            record(operation, start, System.nanoTime());
+        } else {
+            fail(operation, start, "HTTP " + status);
+        }
+    }
+
+    private void record(String operation, long start, long end) {
+        if (start >= measureFromNanos) {
+            recorders.get(operation).record(end - start);
+        }
+    }
+
+    private void fail(String operation, long start, String reason) {
+        if (start >= measureFromNanos) {
+            recorders.get(operation).fail(reason);
+        }
+    }
+
+    private static String reason(Exception e) {
+        return e.getClass().getSimpleName();
+    }
+
+    private HttpRequest get(String path, Credentials session) {
+        return session.apply(HttpRequest.newBuilder(baseUri.resolve(path)))
+                .timeout(Duration.ofMinutes(5))
+                .GET()
+                .build();
+    }
+
+    /**
+     * @param session null for unauthenticated calls.
+     */
+    private HttpRequest jsonPost(String path, Credentials session, Map<String, String> body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(path));
+        if (session != null) {
+            session.apply(builder);
+        }
+        return builder.timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private HttpRequest formPost(String path, String form) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    /**
+     * The header a logged-in virtual user sends: its session cookie or its bearer token.
+     */
+    private record Credentials(String header, String value) {
+
+        HttpRequest.Builder apply(HttpRequest.Builder builder) {
+            return builder.header(header, value);
+        }
+    }
+}
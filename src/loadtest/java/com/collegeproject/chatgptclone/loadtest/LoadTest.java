@@ -0,0 +1,145 @@
+package com.collegeproject.chatgptclone.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * Command-line entry point for load-testing the Spring tier without Ollama.
+ * <pre>
+ * stub [--port=5000] [--latency=lognormal:800ms,0.5] [--tokens=40] [--token-interval=25ms] [--error-ratio=0]
+ *     Runs only the stub LLM service, until killed. Start the app against it with
+ *     --llm.service.base-url=http://127.0.0.1:5000
+ * run [--url=http://localhost:8080] [--users=20] [--duration=60s] [--warmup=10s] [--think-time=exp:2s]
+ *     [--history-ratio=0.1] [--cancel-ratio=0.05] [--cancel-after=500ms] [--stream=false] [--prompts=0]
+ *     [--user-prefix=loadtest-] [--password=loadtest] [--auth=session|token] [--stub-port=N plus the stub options]
+ *     Drives a running app and prints throughput and latency percentiles per operation;
+ *     with --stub-port the stub runs in the same JVM for the duration of the test.
+ *     --auth=token sends a JWT from /api/auth/token instead of the session cookie.
+ * startup [--faststart] [--jvm-args=-Xmx512m,...] [--runs=5] [--warmup=1] [--port=18080] [--timeout=120s]
+ *     Starts the packaged app repeatedly and reports the time to the first successful
+ *     /api/auth/status. By default runs target/*.jar (mvn package); with --faststart, the
+ *     AOT + CDS layout in target/faststart (mvn -Pfaststart package). --jvm-args is comma-separated.
+ * </pre>
+ * Through Maven: mvn -Ploadtest -DskipTests verify -Dloadtest.args="run --users=50"
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !(args[0].equals("stub") || args[0].equals("run") || args[0].equals("startup"))) {
+            System.out.println("Usage: LoadTest stub|run|startup [--option=value ...] (see the LoadTest class comment)");
+            System.exit(2);
+        }
+        Map<String, String> options = parseOptions(args);
+        if (args[0].equals("startup")) {
+            System.out.print(startupBenchmark(options).run());
+            return;
+        }
+        if (args[0].equals("stub")) {
+            try (StubLlmServer stub = stub(options, Integer.parseInt(options.getOrDefault("port", "5000")))) {
+                stub.start();
+                new CountDownLatch(1).await(); // Until the process is killed
+            }
+            return;
+        }
+
+        StubLlmServer stub = options.containsKey("stub-port")
+                ? stub(options, Integer.parseInt(options.get("stub-port"))).start()
+                : null;
+        try {
+            LoadGenerator.Settings settings = new LoadGenerator.Settings(
+                    Integer.parseInt(options.getOrDefault("users", "20")),
+                    duration(options.getOrDefault("duration", "60s")),
+                    duration(options.getOrDefault("warmup", "10s")),
+                    LatencyDistribution.parse(options.getOrDefault("think-time", "exp:2s")),
+                    Double.parseDouble(options.getOrDefault("history-ratio", "0.1")),
+                    Double.parseDouble(options.getOrDefault("cancel-ratio", "0.05")),
+                    duration(options.getOrDefault("cancel-after", "500ms")),
+                    Boolean.parseBoolean(options.getOrDefault("stream", "false")),
+                    Integer.parseInt(options.getOrDefault("prompts", "0")),
+                    options.getOrDefault("user-prefix", "loadtest-"),
+                    options.getOrDefault("password", "loadtest"),
+                    options.getOrDefault("auth", "session").equals("token"));
+            String report = new LoadGenerator(URI.create(options.getOrDefault("url", "http://localhost:8080")),
+                    settings).run();
+            System.out.print(report);
+            if (stub != null) {
+                System.out.println("  " + stub.describe());
+            }
+        } finally {
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    private static StartupBenchmark startupBenchmark(Map<String, String> options) throws IOException {
+        boolean faststart = Boolean.parseBoolean(options.getOrDefault("faststart", "false"));
+        Path directory = Path.of(faststart ? "target/faststart" : "target");
+        String suffix = faststart ? "-faststart.jar" : ".jar";
+        Path jar;
+        try (Stream<Path> files = Files.list(directory)) {
+            jar = files.filter(file -> file.getFileName().toString().endsWith(suffix)
+                            && (faststart || !file.getFileName().toString().endsWith("-faststart.jar")))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No *" + suffix + " in " + directory
+                            + "; package the app first"));
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (faststart) {
+            command.add("-XX:SharedArchiveFile=app.jsa");
+            command.add("-Dspring.aot.enabled=true");
+            command.add("-Dspring.profiles.active=faststart");
+        }
+        String jvmArgs = options.getOrDefault("jvm-args", "");
+        if (!jvmArgs.isBlank()) {
+            command.addAll(List.of(jvmArgs.split(",")));
+        }
+        command.add("-jar");
+        command.add(jar.getFileName().toString());
+        return new StartupBenchmark(command, directory,
+                Integer.parseInt(options.getOrDefault("port", "18080")),
+                Integer.parseInt(options.getOrDefault("warmup", "1")),
+                Integer.parseInt(options.getOrDefault("runs", "5")),
+                duration(options.getOrDefault("timeout", "120s")));
+    }
+
+    private static StubLlmServer stub(Map<String, String> options, int port) throws Exception {
+        return new StubLlmServer(port,
+                LatencyDistribution.parse(options.getOrDefault("latency", "lognormal:800ms,0.5")),
+                Integer.parseInt(options.getOrDefault("tokens", "40")),
+                duration(options.getOrDefault("token-interval", "25ms")),
+                Double.parseDouble(options.getOrDefault("error-ratio", "0")));
+    }
+
+    private static Duration duration(String value) {
+        return Duration.ofNanos((long) (LatencyDistribution.millis(value) * 1_000_000));
+    }
+
+    /**
+     * {@code --key=value} arguments after the command; a bare {@code --flag} means "true".
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option=value, got " + args[i]);
+            }
+            String[] pair = args[i].substring(2).split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,108 @@
+package com.collegeproject.chatgptclone.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first successful request: starts the app as a child process, polls
+ * GET /api/auth/status until it answers 200 with JSON, then stops the process. Repeated
+ * {@code runs} times (after {@code warmup} unmeasured runs that fill the OS file cache), so
+ * regressions in startup time show up as a shift in the median rather than noise.
+ * The app command gets {@code --server.port=<port>} appended.
+ */
+final class StartupBenchmark {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(20);
+
+    private final List<String> command;
+    private final Path directory;
+    private final int port;
+    private final int warmup;
+    private final int runs;
+    private final Duration timeout;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(500)).build();
+
+    StartupBenchmark(List<String> command, Path directory, int port, int warmup, int runs, Duration timeout) {
+        this.command = new ArrayList<>(command);
+        this.command.add("--server.port=" + port);
+        this.directory = directory;
+        this.port = port;
+        this.warmup = warmup;
+        this.runs = runs;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return The report: every run, then min / median / max in milliseconds.
+     */
+    String run() throws Exception {
+        System.out.println("Startup benchmark: " + String.join(" ", command) + " (in " + directory + ")");
+        for (int i = 0; i < warmup; i++) {
+            System.out.printf("  warmup %d: %8.0f ms%n", i + 1, startOnce() / 1e6);
+        }
+        long[] samples = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            samples[i] = startOnce();
+            System.out.printf("  run %d:    %8.0f ms%n", i + 1, samples[i] / 1e6);
+        }
+        Arrays.sort(samples);
+        return String.format("time to first /api/auth/status: min %.0f  median %.0f  max %.0f ms (%d runs)%n",
+                samples[0] / 1e6, median(samples) / 1e6, samples[runs - 1] / 1e6, runs);
+    }
+
+    /**
+     * @return Nanoseconds from process start to the first successful status response.
+     */
+    private long startOnce() throws Exception {
+        URI status = URI.create("http://127.0.0.1:" + port + "/api/auth/status");
+        HttpRequest request = HttpRequest.newBuilder(status).timeout(Duration.ofSeconds(5)).GET().build();
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long deadline = started + timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The app exited with code " + process.exitValue()
+                            + " before answering");
+                }
+                try {
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 200 && response.body().contains("loggedIn")) {
+                        return System.nanoTime() - started;
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            throw new IllegalStateException("No successful /api/auth/status within " + timeout);
+        } finally {
+            stop(process);
+        }
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy(); // SIGTERM: graceful shutdown, so the port is free for the next run
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static double median(long[] sorted) {
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+}
@@ -0,0 +1,174 @@
+package com.collegeproject.chatgptclone.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the Python LLM service (llm-service/app.py), so the Spring tier can be
+ * load-tested without Ollama:
+ * - POST /predict answers after a latency drawn from a {@link LatencyDistribution}; with
+ *   {"stream": true} it sends NDJSON tokens (first token after the sampled latency, then one
+ *   every {@code tokenInterval}), like the real service.
+ * - POST /embed returns deterministic pseudo-random vectors, POST /reload-docs and GET /health succeed.
+ * - A share of /predict calls can fail with HTTP 500 ({@code errorRatio}).
+ * Every request is handled on its own virtual thread, so sleeping costs nothing.
+ */
+public final class StubLlmServer implements AutoCloseable {
+
+    private static final int EMBEDDING_DIMENSION = 384;
+    private static final String[] WORDS = ("Spring Boot auto-configures beans from the classpath so a controller "
+            + "service and repository can be wired together with very little configuration").split(" ");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyDistribution latency;
+    private final int tokens;
+    private final Duration tokenInterval;
+    private final double errorRatio;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong predictions = new AtomicLong();
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong aborted = new AtomicLong();
+
+    public StubLlmServer(int port, LatencyDistribution latency, int tokens, Duration tokenInterval,
+            double errorRatio) throws IOException {
+        this.latency = latency;
+        this.tokens = Math.max(1, tokens);
+        this.tokenInterval = tokenInterval;
+        this.errorRatio = errorRatio;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/predict", this::predict);
+        server.createContext("/embed", this::embed);
+        server.createContext("/reload-docs", exchange -> sendJson(exchange, 200,
+                Map.of("status", "Documents reloaded successfully.")));
+        server.createContext("/health", exchange -> sendJson(exchange, 200, Map.of("status", "ok")));
+    }
+
+    public StubLlmServer start() {
+        server.start();
+        System.out.println("Stub LLM service on http://127.0.0.1:" + port() + " (latency " + latency + ", "
+                + tokens + " tokens every " + tokenInterval.toMillis() + " ms when streaming, error ratio "
+                + errorRatio + ")");
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void predict(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            boolean stream = request.path("stream").asBoolean(false);
+            predictions.incrementAndGet();
+            sleep(latency.sample());
+            if (ThreadLocalRandom.current().nextDouble() < errorRatio) {
+                failures.incrementAndGet();
+                if (stream) {
+                    sendNdjson(exchange, List.of(Map.of("error", "Stub LLM failure")));
+                } else {
+                    sendJson(exchange, 500, Map.of("error", "Stub LLM failure"));
+                }
+                return;
+            }
+            if (!stream) {
+                sendJson(exchange, 200, Map.of("response", reply(tokens)));
+                return;
+            }
+            streams.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0); // chunked
+            OutputStream body = exchange.getResponseBody();
+            for (int i = 0; i < tokens; i++) {
+                if (i > 0) {
+                    sleep(tokenInterval);
+                }
+                body.write(line(Map.of("token", WORDS[i % WORDS.length] + " ")));
+                body.flush();
+            }
+            body.write(line(Map.of("done", true)));
+            body.flush();
+        } catch (IOException e) {
+            aborted.incrementAndGet(); // The app closed the connection (cancelled request)
+        }
+    }
+
+    private void embed(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode texts = objectMapper.readTree(exchange.getRequestBody()).path("texts");
+            float[][] embeddings = new float[texts.size()][];
+            for (int i = 0; i < embeddings.length; i++) {
+                // Same text, same vector
+                java.util.Random random = new java.util.Random(texts.get(i).asText().hashCode());
+                embeddings[i] = new float[EMBEDDING_DIMENSION];
+                for (int j = 0; j < EMBEDDING_DIMENSION; j++) {
+                    embeddings[i][j] = (float) random.nextGaussian();
+                }
+            }
+            sendJson(exchange, 200, Map.of("embeddings", embeddings));
+        }
+    }
+
+    private static String reply(int tokens) {
+        StringBuilder reply = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            reply.append(WORDS[i % WORDS.length]).append(' ');
+        }
+        return reply.toString().trim();
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(value);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void sendNdjson(HttpExchange exchange, List<Map<String, Object>> lines) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        for (Map<String, Object> value : lines) {
+            exchange.getResponseBody().write(line(value));
+        }
+    }
+
+    private byte[] line(Map<String, Object> value) throws IOException {
+        return (objectMapper.writeValueAsString(value) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String describe() {
+        return "stub: " + predictions.get() + " predictions (" + streams.get() + " streamed), " + failures.get()
+                + " injected failures, " + aborted.get() + " aborted by the app";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,100 @@
+package com.collegeproject.chatgptclone.config;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a (deliberately slow) password encoder on a small dedicated pool.
+ * BCrypt takes ~100 ms of CPU per hash; when a whole class logs in at once, at most
+ * {@code threads} hashes run at a time and the request threads (virtual threads, so
+ * waiting is cheap) queue behind them instead of all competing for the CPU with chat traffic.
+ * When the queue is full, or a hash waits longer than {@code timeout}, the login fails with
+ * an {@link AuthenticationServiceException} (form login shows its error page) rather than piling up.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration timeout) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                task -> Thread.ofPlatform().daemon().name("password-hashing-" + counter.incrementAndGet())
+                        .unstarted(task));
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword); // Cheap: only parses the hash
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new AuthenticationServiceException("Too many logins in progress, please try again");
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.incrementAndGet();
+            throw new AuthenticationServiceException("Password check timed out, please try again");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while checking the password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
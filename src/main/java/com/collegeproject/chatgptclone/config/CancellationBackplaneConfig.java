@@ -0,0 +1,42 @@
+package com.collegeproject.chatgptclone.config;
+
+import com.collegeproject.chatgptclone.service.CancellationBackplane;
+import com.collegeproject.chatgptclone.service.InMemoryCancellationBackplane;
+import com.collegeproject.chatgptclone.service.MongoCancellationBackplane;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Picks the cancellation backplane from {@code chat.cluster.backplane} when the app starts.
+ * A factory method rather than {@code @ConditionalOnProperty} on the implementations: the
+ * faststart build (Spring AOT) evaluates conditions at build time, which would fix the choice
+ * in the jar and silently ignore the property on a multi-instance deployment.
+ */
+@Configuration
+public class CancellationBackplaneConfig {
+
+    @Bean
+    public CancellationBackplane cancellationBackplane(@Value("${chat.cluster.backplane:memory}") String backplane,
+            ObjectProvider<MongoTemplate> mongoTemplate,
+            @Value("${chat.cluster.mongo.cancel-log-size:1MB}") DataSize cancelLogSize,
+            @Value("${chat.cluster.ownership-ttl:1h}") Duration ownershipTtl,
+            @Value("${chat.cluster.mongo.retry-interval:1s}") Duration retryInterval) {
+        return switch (backplane.trim()) {
+            case "memory" -> new InMemoryCancellationBackplane();
+            case "mongo" -> {
+                MongoCancellationBackplane mongo = new MongoCancellationBackplane(mongoTemplate.getObject(),
+                        cancelLogSize, ownershipTtl, retryInterval);
+                mongo.start(); // Fails startup if the cancel log can't be set up
+                yield mongo;
+            }
+            default -> throw new IllegalStateException("Unknown chat.cluster.backplane '" + backplane
+                    + "' (expected memory or mongo)");
+        };
+    }
+}
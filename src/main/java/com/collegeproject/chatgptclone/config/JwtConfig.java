@@ -0,0 +1,70 @@
+package com.collegeproject.chatgptclone.config;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * HMAC-signed (HS256) JWTs for API clients: issued by POST /api/auth/token, then sent as
+ * "Authorization: Bearer ...". Verifying a token is a local signature check, so bearer
+ * requests need neither a session nor a user lookup.
+ * The key comes from {@code auth.jwt.secret} (base64, at least 32 bytes). Without one a
+ * random key is generated, and tokens stop working when the app restarts.
+ */
+@Configuration
+public class JwtConfig {
+
+    public static final String ROLES_CLAIM = "roles";
+
+    @Bean
+    public SecretKey jwtSigningKey(@Value("${auth.jwt.secret:}") String secret) {
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            System.out.println("auth.jwt.secret is not set: using a random JWT key (tokens are invalidated on restart)");
+        } else {
+            key = Base64.getDecoder().decode(secret.trim());
+            if (key.length < 32) {
+                throw new IllegalStateException("auth.jwt.secret must be at least 32 bytes (base64-encoded)");
+            }
+        }
+        return new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    @Bean
+    public JwtEncoder jwtEncoder(SecretKey jwtSigningKey) {
+        return new NimbusJwtEncoder(new ImmutableSecret<>(jwtSigningKey));
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(SecretKey jwtSigningKey) {
+        return NimbusJwtDecoder.withSecretKey(jwtSigningKey).macAlgorithm(MacAlgorithm.HS256).build();
+    }
+
+    /**
+     * Maps the "roles" claim to the same authorities form login gives ("USER", no prefix).
+     */
+    @Bean
+    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+        JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthoritiesClaimName(ROLES_CLAIM);
+        authorities.setAuthorityPrefix("");
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authorities);
+        return converter;
+    }
+}
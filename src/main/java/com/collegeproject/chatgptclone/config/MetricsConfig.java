@@ -0,0 +1,127 @@
+package com.collegeproject.chatgptclone.config;
+
+import com.collegeproject.chatgptclone.controller.ChatWebSocketHandler;
+import com.collegeproject.chatgptclone.service.CancellationRegistry;
+import com.collegeproject.chatgptclone.service.ChatMessageWriter;
+import com.collegeproject.chatgptclone.service.ImagePreprocessor;
+import com.collegeproject.chatgptclone.service.LlmAdmissionScheduler;
+import com.collegeproject.chatgptclone.service.LlmBackend;
+import com.collegeproject.chatgptclone.service.LlmClient;
+import com.collegeproject.chatgptclone.service.LlmRequestCoalescer;
+import com.collegeproject.chatgptclone.service.LlmResponseCache;
+import com.collegeproject.chatgptclone.service.RecentConversationCache;
+import com.collegeproject.chatgptclone.service.UserDetailsCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gauges and counters for the in-memory state behind the chat pipeline (LLM queue,
+ * running requests, caches, write-behind queue), next to the per-request timers in ChatMetrics.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder chatStateMetrics(LlmAdmissionScheduler admissionScheduler,
+            CancellationRegistry cancellationRegistry, ChatMessageWriter messageWriter,
+            RecentConversationCache recentConversationCache, LlmResponseCache llmResponseCache,
+            LlmRequestCoalescer coalescer, ImagePreprocessor imagePreprocessor, ChatWebSocketHandler webSocketHandler) {
+        return registry -> {
+            Gauge.builder("llm.admission.active", admissionScheduler, LlmAdmissionScheduler::getActive)
+                    .description("LLM calls holding a slot").register(registry);
+            Gauge.builder("llm.admission.queued", admissionScheduler, LlmAdmissionScheduler::getQueueDepth)
+                    .description("Requests waiting for an LLM slot").register(registry);
+            FunctionCounter.builder("llm.admission.rejected", admissionScheduler,
+                    LlmAdmissionScheduler::getRejectedCount)
+                    .description("Requests rejected with 429 because the queue was full").register(registry);
+
+            Gauge.builder("chat.requests.inflight", cancellationRegistry, CancellationRegistry::getInFlightCount)
+                    .register(registry);
+            Gauge.builder("chat.cancellations.pending", cancellationRegistry,
+                    CancellationRegistry::getPendingCancellationCount).register(registry);
+            FunctionCounter.builder("chat.cancellations.published", cancellationRegistry,
+                    CancellationRegistry::getPublishedCancelCount)
+                    .description("Cancels for requests not running here, passed on to the other nodes")
+                    .register(registry);
+            FunctionCounter.builder("chat.cancellations.received", cancellationRegistry,
+                    CancellationRegistry::getReceivedCancelCount)
+                    .description("Cancels received from other nodes").register(registry);
+
+            Gauge.builder("chat.websocket.connections", webSocketHandler, ChatWebSocketHandler::getOpenConnectionCount)
+                    .register(registry);
+            Gauge.builder("chat.websocket.requests", webSocketHandler, ChatWebSocketHandler::getOpenRequestCount)
+                    .description("Chat requests running over /ws/chat").register(registry);
+
+            Gauge.builder("chat.writer.queued", messageWriter, ChatMessageWriter::getQueueSize)
+                    .description("Messages waiting in the write-behind queue").register(registry);
+
+            FunctionCounter.builder("chat.context.cache.hits", recentConversationCache,
+                    RecentConversationCache::getHitCount).register(registry);
+            FunctionCounter.builder("chat.context.cache.misses", recentConversationCache,
+                    RecentConversationCache::getMissCount).register(registry);
+            FunctionCounter.builder("chat.context.cache.evictions", recentConversationCache,
+                    RecentConversationCache::getEvictionCount).register(registry);
+
+            Gauge.builder("llm.response.cache.size", llmResponseCache, LlmResponseCache::getSize).register(registry);
+            FunctionCounter.builder("llm.response.cache.hits", llmResponseCache,
+                    cache -> cache.getCacheStats().hitCount()).register(registry);
+            FunctionCounter.builder("llm.response.cache.misses", llmResponseCache,
+                    cache -> cache.getCacheStats().missCount()).register(registry);
+            FunctionCounter.builder("llm.response.cache.evictions", llmResponseCache,
+                    cache -> cache.getCacheStats().evictionCount()).register(registry);
+
+            Gauge.builder("llm.coalescing.inflight", coalescer, LlmRequestCoalescer::getInFlightCount)
+                    .description("LLM calls shared by identical requests, running").register(registry);
+            FunctionCounter.builder("llm.coalescing.followers", coalescer, LlmRequestCoalescer::getFollowerCount)
+                    .description("Requests answered by another request's LLM call").register(registry);
+
+            Gauge.builder("chat.image.preprocess.queued", imagePreprocessor, ImagePreprocessor::getQueued)
+                    .description("Uploads waiting for the image preprocessing pool").register(registry);
+            FunctionCounter.builder("chat.image.preprocess.fallbacks", imagePreprocessor,
+                    ImagePreprocessor::getFallbackCount)
+                    .description("Uploads sent to the LLM unprocessed (pool saturated, timeout, unknown format)")
+                    .register(registry);
+            FunctionCounter.builder("chat.image.preprocess.bytes.in", imagePreprocessor, ImagePreprocessor::getBytesIn)
+                    .baseUnit("bytes").register(registry);
+            FunctionCounter.builder("chat.image.preprocess.bytes.out", imagePreprocessor, ImagePreprocessor::getBytesOut)
+                    .baseUnit("bytes").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder llmBackendMetrics(LlmClient llmClient) {
+        return registry -> {
+            for (LlmBackend backend : llmClient.getBackends()) {
+                String url = backend.getBaseUri().toString();
+                Gauge.builder("llm.backend.outstanding", backend, LlmBackend::getOutstanding)
+                        .description("Requests sent to this LLM backend and not finished yet")
+                        .tag("backend", url).register(registry);
+                Gauge.builder("llm.backend.circuit.state", backend, b -> b.getState().ordinal())
+                        .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                        .tag("backend", url).register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder authMetrics(BoundedPasswordEncoder passwordEncoder, UserDetailsCache userDetailsCache) {
+        return registry -> {
+            Gauge.builder("auth.password.hashing.active", passwordEncoder, BoundedPasswordEncoder::getActive)
+                    .description("Password hashes being computed").register(registry);
+            Gauge.builder("auth.password.hashing.queued", passwordEncoder, BoundedPasswordEncoder::getQueued)
+                    .description("Logins waiting for the password-hashing pool").register(registry);
+            FunctionCounter.builder("auth.password.hashing.rejected", passwordEncoder,
+                    BoundedPasswordEncoder::getRejectedCount)
+                    .description("Logins refused because the hashing pool was saturated").register(registry);
+
+            Gauge.builder("auth.user.cache.size", userDetailsCache, UserDetailsCache::getSize).register(registry);
+            FunctionCounter.builder("auth.user.cache.hits", userDetailsCache, UserDetailsCache::getHitCount)
+                    .register(registry);
+            FunctionCounter.builder("auth.user.cache.misses", userDetailsCache, UserDetailsCache::getMissCount)
+                    .register(registry);
+        };
+    }
+}
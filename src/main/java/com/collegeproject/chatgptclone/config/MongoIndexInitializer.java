@@ -0,0 +1,66 @@
+package com.collegeproject.chatgptclone.config;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.model.ChatMessageBucket;
+import com.collegeproject.chatgptclone.model.User;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} / {@code @CompoundIndex} on the mapped documents.
+ * Spring Data's auto-index-creation would do this while the context starts (and fail
+ * startup without MongoDB); here it runs in the background once the app is up, and a
+ * failure (e.g. existing duplicate usernames) is only logged. Code relying on a unique index
+ * asks {@link #isIndexed} first and keeps its own check until the index is confirmed.
+ */
+@Component
+public class MongoIndexInitializer {
+
+    private static final List<Class<?>> INDEXED_DOCUMENTS = List.of(User.class, ChatMessage.class, ChatMessageBucket.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final AsyncTaskExecutor taskExecutor;
+    private final Set<Class<?>> indexed = ConcurrentHashMap.newKeySet();
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate,
+            @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        taskExecutor.execute(() -> INDEXED_DOCUMENTS.forEach(this::ensureIndexes));
+    }
+
+    /**
+     * @return true once every index declared on {@code type} exists in MongoDB.
+     */
+    public boolean isIndexed(Class<?> type) {
+        return indexed.contains(type);
+    }
+
+    private void ensureIndexes(Class<?> type) {
+        try {
+            IndexResolver resolver = new MongoPersistentEntityIndexResolver(
+                    mongoTemplate.getConverter().getMappingContext());
+            IndexOperations indexOperations = mongoTemplate.indexOps(type);
+            resolver.resolveIndexFor(type).forEach(indexOperations::ensureIndex);
+            indexed.add(type);
+        } catch (Exception e) {
+            System.out.println("Could not create indexes for " + mongoTemplate.getCollectionName(type) + ": "
+                    + e.getMessage());
+        }
+    }
+}
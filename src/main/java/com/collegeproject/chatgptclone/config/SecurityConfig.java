@@ -2,19 +2,27 @@ package com.collegeproject.chatgptclone.config;
 
 import com.collegeproject.chatgptclone.service.UserService;
 import com.collegeproject.chatgptclone.repository.UserRepository; // NEW: Import UserRepository
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired; // Keep if needed for other autowired fields
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
@@ -22,35 +30,54 @@ public class SecurityConfig {
 
     // REMOVED: @Autowired private UserService userService; // No longer needed for field injection
 
-    // Define the PasswordEncoder bean for hashing passwords
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    // Define the PasswordEncoder bean for hashing passwords (BCrypt, on its own bounded pool)
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder(@Value("${auth.password-hashing.threads:0}") int threads,
+            @Value("${auth.password-hashing.queue-capacity:200}") int queueCapacity,
+            @Value("${auth.password-hashing.timeout:10s}") Duration timeout) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity, timeout);
     }
 
     // NEW: Define the UserDetailsService bean. Spring will inject UserRepository and PasswordEncoder
     // into this method, allowing UserService to be created without circular dependency.
     @Bean
-    public UserDetailsService userDetailsService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
-        return new UserService(userRepository, passwordEncoder);
+    public UserDetailsService userDetailsService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+            MongoIndexInitializer indexInitializer) {
+        return new UserService(userRepository, passwordEncoder, indexInitializer);
     }
 
     // Configure the AuthenticationProvider to use our UserDetailsService and PasswordEncoder
     @Bean
-    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+            UserCache userCache) {
         DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
         authenticationProvider.setUserDetailsService(userDetailsService); // Use the bean from above
         authenticationProvider.setPasswordEncoder(passwordEncoder); // Use the bean from above
+        authenticationProvider.setUserCache(userCache); // Skip the MongoDB lookup for recent logins
         return authenticationProvider;
     }
 
+    // Used by the token endpoint (POST /api/auth/token) to check credentials like form login does
+    @Bean
+    public AuthenticationManager authenticationManager(AuthenticationProvider authenticationProvider) {
+        return new ProviderManager(authenticationProvider);
+    }
+
     // Configure the SecurityFilterChain to define HTTP security rules
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtAuthenticationConverter jwtAuthenticationConverter)
+            throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(authorize -> authorize
+                        // Async dispatches complete already-authorized SSE streams
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .requestMatchers("/", "/login", "/signup", "/css/**", "/js/**", "/images/**", "/webjars/**").permitAll()
+                        // Health checks and Prometheus scraping run without a user session
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                        .requestMatchers("/api/auth/token").permitAll()
+                        // Reports {"loggedIn": false} to anonymous callers (chat page, startup probes)
+                        .requestMatchers("/api/auth/status").permitAll()
                         .anyRequest().authenticated()
                 )
                 .formLogin(form -> form
@@ -64,6 +91,10 @@ public class SecurityConfig {
                         .logoutUrl("/logout")
                         .logoutSuccessUrl("/login?logout=true")
                         .permitAll()
+                )
+                // "Authorization: Bearer <jwt>" authenticates a single request: no session, no user lookup
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter))
                 );
         return http.build();
     }
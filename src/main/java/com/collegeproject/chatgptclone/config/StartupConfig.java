@@ -0,0 +1,28 @@
+package com.collegeproject.chatgptclone.config;
+
+import jakarta.servlet.Filter;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Lazy initialization (spring.main.lazy-initialization, on in the faststart profile) without a
+ * slow first request: servlet filters (Spring Security), security filter chains and the
+ * controllers, with everything they depend on, are still created at startup. What only
+ * background jobs or rarely used endpoints need (metrics binders, document ingestion,
+ * history export, ...) is created on first use, or when ApplicationReadyEvent listeners run
+ * after the server is already accepting requests.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerRequestPath() {
+        return (beanName, beanDefinition, beanType) -> Filter.class.isAssignableFrom(beanType)
+                || SecurityFilterChain.class.isAssignableFrom(beanType)
+                || AnnotatedElementUtils.hasAnnotation(beanType, Controller.class);
+    }
+}
@@ -0,0 +1,37 @@
+package com.collegeproject.chatgptclone.config;
+
+import com.collegeproject.chatgptclone.controller.ChatWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistration;
+
+/**
+ * Maps the chat WebSocket. The handshake is an ordinary GET, so it goes through the security
+ * filter chain (session cookie or bearer token) and the connection keeps that user.
+ * Only same-origin pages may connect unless {@code chat.websocket.allowed-origins} lists others:
+ * the session cookie is sent with cross-site handshakes too, and CSRF protection is off.
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final ChatWebSocketHandler chatWebSocketHandler;
+    private final String[] allowedOrigins;
+
+    public WebSocketConfig(ChatWebSocketHandler chatWebSocketHandler,
+            @Value("${chat.websocket.allowed-origins:}") String[] allowedOrigins) {
+        this.chatWebSocketHandler = chatWebSocketHandler;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        WebSocketHandlerRegistration registration = registry.addHandler(chatWebSocketHandler, "/ws/chat");
+        if (allowedOrigins.length > 0) {
+            registration.setAllowedOrigins(allowedOrigins);
+        }
+    }
+}
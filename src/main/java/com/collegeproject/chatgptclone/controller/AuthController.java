@@ -2,16 +2,21 @@
 package com.collegeproject.chatgptclone.controller;
 
 import com.collegeproject.chatgptclone.model.User;
+import com.collegeproject.chatgptclone.service.AuthTokenService;
 import com.collegeproject.chatgptclone.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 // import org.springframework.web.servlet.mvc.support.RedirectAttributes; // Removed since flash attributes won't work for static HTML
@@ -25,6 +30,9 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthTokenService authTokenService;
+
     // No changes needed for @GetMapping("/login") as it just returns the view name,
     // and the client-side JavaScript will read the error/logout parameters.
     @GetMapping("/login")
@@ -71,6 +79,28 @@ public class AuthController {
         }
     }
 
+    /**
+     * Exchanges a username and password for a signed bearer token (JWT), for API clients
+     * and load tests: requests with "Authorization: Bearer <token>" need no session.
+     *
+     * @param credentials JSON with "username" and "password".
+     * @return The token, its type and lifetime in seconds; 401 if the credentials are wrong.
+     */
+    @PostMapping("/api/auth/token")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> issueToken(@RequestBody Map<String, String> credentials) {
+        String username = credentials.get("username");
+        String password = credentials.get("password");
+        if (username == null || password == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(authTokenService.issueToken(username, password));
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/api/auth/status")
     @ResponseBody
     public Map<String, Object> getUserAuthStatus() {
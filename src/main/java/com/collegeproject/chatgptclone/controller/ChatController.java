@@ -1,17 +1,57 @@
 
 package com.collegeproject.chatgptclone.controller;
 
+import com.collegeproject.chatgptclone.model.ChatHistoryPage;
 import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.retrieval.RetrievalService;
+import com.collegeproject.chatgptclone.service.AdmissionRejectedException;
+import com.collegeproject.chatgptclone.service.ChatArchiveService;
+import com.collegeproject.chatgptclone.service.ChatExportService;
 import com.collegeproject.chatgptclone.service.ChatService;
+import com.collegeproject.chatgptclone.service.ImagePreprocessor;
+import com.collegeproject.chatgptclone.service.ImageStore;
+import com.collegeproject.chatgptclone.service.ImageUpload;
+import com.collegeproject.chatgptclone.service.LlmAdmissionScheduler;
+import com.collegeproject.chatgptclone.service.LlmClient;
+import com.collegeproject.chatgptclone.service.LlmRequestCoalescer;
+import com.collegeproject.chatgptclone.service.LlmResponseCache;
+import com.collegeproject.chatgptclone.service.RecentConversationCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus; // NEW import
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.security.Principal; // NEW import
+import java.time.LocalDate;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST Controller for handling chat-related API requests.
@@ -21,9 +61,47 @@ import java.util.Map;
 @RequestMapping("/api/chat")
 public class ChatController {
 
+    // Upper bound for a single streamed reply (LLaVA on CPU can take minutes)
+    private static final long STREAM_TIMEOUT_MS = 5 * 60 * 1000L;
+
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor taskExecutor;
+
+    @Autowired
+    private LlmAdmissionScheduler admissionScheduler;
+
+    @Autowired
+    private RecentConversationCache recentConversationCache;
+
+    @Autowired
+    private LlmResponseCache llmResponseCache;
+
+    @Autowired
+    private LlmRequestCoalescer llmRequestCoalescer;
+
+    @Autowired
+    private LlmClient llmClient;
+
+    @Autowired
+    private ChatArchiveService chatArchiveService;
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    @Autowired
+    private ChatExportService chatExportService;
+
+    @Autowired
+    private RetrievalService retrievalService;
+
+    // Multipart image uploads up to this size stay in memory, larger ones are spooled to a temp file
+    @Value("${chat.image.upload.memory-threshold:256KB}")
+    private DataSize uploadMemoryThreshold;
+
     /**
      * Endpoint for sending a new message to the chat.
      * It expects a JSON body with a "message" field.
@@ -55,12 +133,196 @@ public class ChatController {
         return ResponseEntity.ok(botResponse);
     }
 
+    /**
+     * Streaming variant of {@link #sendMessage}. Same JSON body, but the reply is sent as
+     * Server-Sent Events while the model generates it:
+     * "token" events carry {"t": "..."}, a final "done" event carries {"response": "..."}.
+     * The LLM call runs on the task executor so the servlet thread is released immediately.
+     *
+     * @param payload   A map containing the user's message, requestId and optional image.
+     * @param principal The authenticated user's principal.
+     * @return An SseEmitter that receives the tokens.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> streamMessage(@RequestBody Map<String, String> payload, Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String userId = principal.getName();
+        String userMessage = payload.get("message");
+        String imageBase64 = payload.get("imageBase64");
+        // A requestId is needed so a disconnected client can stop the generation
+        String requestId = payload.get("requestId") != null ? payload.get("requestId") : UUID.randomUUID().toString();
+
+        if ((userMessage == null || userMessage.trim().isEmpty()) && (imageBase64 == null || imageBase64.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+        System.out.println("Received streaming message from " + userId + " (ID: " + requestId + "): " + userMessage);
+
+        // Decode first: a bad image is a 400 (handleBadRequest) before anything is reserved
+        ImageUpload upload = ImageUpload.ofBase64(imageBase64);
+        // Reserve the LLM slot here so a full queue is answered with 429 instead of an empty stream
+        CompletableFuture<LlmAdmissionScheduler.Permit> admission;
+        try {
+            admission = chatService.reserveLlmSlot(userId);
+        } catch (RuntimeException e) {
+            closeQuietly(upload);
+            throw e;
+        }
+        return relayStream(userId, requestId, admission, upload, onToken -> {
+            try {
+                return chatService.streamMessage(userId, userMessage, requestId, upload, admission, onToken);
+            } finally {
+                closeQuietly(upload);
+            }
+        });
+    }
+
+    /**
+     * Multipart variant of {@link #sendMessage}: the image is sent as a binary "image" part
+     * instead of Base64 inside JSON, and is streamed to storage and to the LLM from a bounded
+     * buffer (or a temp file when large) rather than being decoded into memory.
+     *
+     * @param message   The user's message (optional when an image is attached).
+     * @param requestId The request ID used to cancel the request.
+     * @param image     The optional image file.
+     * @param principal The authenticated user's principal.
+     * @return A ResponseEntity containing the bot's response message.
+     */
+    @PostMapping(value = "/send", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> sendMultipartMessage(@RequestParam(required = false) String message,
+            @RequestParam(required = false) String requestId,
+            @RequestPart(value = "image", required = false) MultipartFile image, Principal principal)
+            throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated.");
+        }
+        String userId = principal.getName();
+        if ((message == null || message.trim().isEmpty()) && (image == null || image.isEmpty())) {
+            return ResponseEntity.badRequest().body("Message or Image is required.");
+        }
+        System.out.println("Received multipart message from " + userId + " (ID: " + requestId + "): " + message);
+
+        try (ImageUpload upload = readUpload(image)) {
+            return ResponseEntity.ok(chatService.sendMessage(userId, message, requestId, upload));
+        }
+    }
+
+    /**
+     * Multipart variant of {@link #streamMessage}, answered with the same Server-Sent Events.
+     * The upload is read before the request goes async and deleted once the stream ends.
+     *
+     * @param message   The user's message (optional when an image is attached).
+     * @param requestId The request ID used to cancel the request.
+     * @param image     The optional image file.
+     * @param principal The authenticated user's principal.
+     * @return An SseEmitter that receives the tokens.
+     */
+    @PostMapping(value = "/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> streamMultipartMessage(@RequestParam(required = false) String message,
+            @RequestParam(required = false) String requestId,
+            @RequestPart(value = "image", required = false) MultipartFile image, Principal principal)
+            throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String userId = principal.getName();
+        String streamId = requestId != null ? requestId : UUID.randomUUID().toString();
+        if ((message == null || message.trim().isEmpty()) && (image == null || image.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+        System.out.println("Received streaming multipart message from " + userId + " (ID: " + streamId + "): "
+                + message);
+
+        ImageUpload upload = readUpload(image);
+        CompletableFuture<LlmAdmissionScheduler.Permit> admission;
+        try {
+            admission = chatService.reserveLlmSlot(userId);
+        } catch (RuntimeException e) {
+            closeQuietly(upload);
+            throw e;
+        }
+        return relayStream(userId, streamId, admission, upload, onToken -> {
+            try {
+                return chatService.streamMessage(userId, message, streamId, upload, admission, onToken);
+            } finally {
+                closeQuietly(upload);
+            }
+        });
+    }
+
+    /**
+     * Runs a streaming call on the task executor and relays its tokens as SSE events:
+     * "token" events carry {"t": "..."}, a final "done" event carries {"response": "..."}.
+     * If the executor is saturated the reserved slot and the upload are given back and the
+     * client gets a 503, as on the WebSocket path.
+     */
+    private ResponseEntity<SseEmitter> relayStream(String userId, String requestId,
+            CompletableFuture<LlmAdmissionScheduler.Permit> admission, ImageUpload upload,
+            Function<Consumer<String>, String> streamCall) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        emitter.onTimeout(() -> chatService.cancelRequest(userId, requestId));
+
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    String botResponse = streamCall.apply(token -> {
+                        try {
+                            emitter.send(SseEmitter.event().name("token").data(Map.of("t", token)));
+                        } catch (IOException | IllegalStateException e) {
+                            // Client went away (closed tab / aborted fetch): stop the generation
+                            chatService.cancelRequest(userId, requestId);
+                        }
+                    });
+                    emitter.send(SseEmitter.event().name("done").data(Map.of("response", botResponse)));
+                    emitter.complete();
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Executor saturated or shutting down: give the slot back and let the client retry
+            chatService.releaseLlmSlot(admission);
+            closeQuietly(upload);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Copies an uploaded part into an ImageUpload (small ones in memory, larger ones to a temp
+     * file), hashing it on the way.
+     *
+     * @return null if no image was sent.
+     */
+    private ImageUpload readUpload(MultipartFile image) throws IOException {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+        try (InputStream in = image.getInputStream()) {
+            return ImageUpload.fromStream(in, uploadMemoryThreshold.toBytes());
+        }
+    }
+
+    private static void closeQuietly(ImageUpload upload) {
+        if (upload != null) {
+            upload.close();
+        }
+    }
+
     @PostMapping("/cancel")
     @ResponseBody
-    public ResponseEntity<String> cancelRequest(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<String> cancelRequest(@RequestBody Map<String, String> payload, Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated.");
+        }
         String requestId = payload.get("requestId");
         if (requestId != null && !requestId.isEmpty()) {
-            chatService.cancelRequest(requestId);
+            chatService.cancelRequest(principal.getName(), requestId); // Only the caller's own requests
             return ResponseEntity.ok("Cancellation requested.");
         }
         return ResponseEntity.badRequest().body("Missing requestId");
@@ -84,4 +346,289 @@ public class ChatController {
         List<ChatMessage> history = chatService.getChatHistory(userId); // Pass userId
         return ResponseEntity.ok(history);
     }
+
+    /**
+     * Downloads the user's full history as NDJSON (one message per line, oldest first),
+     * written while it is read from MongoDB so memory use stays flat for any history size.
+     *
+     * @param images    Whether to embed the images (Base64) in the export.
+     * @param gzip      Whether to gzip the file (.jsonl.gz) or send plain NDJSON (.jsonl).
+     * @param principal The authenticated user's principal.
+     * @return The export, as an attachment.
+     */
+    @GetMapping("/history/export")
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> exportChatHistory(
+            @RequestParam(value = "images", defaultValue = "false") boolean images,
+            @RequestParam(value = "gzip", defaultValue = "true") boolean gzip, Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String userId = principal.getName();
+        String filename = "chat-history-" + LocalDate.now() + (gzip ? ".jsonl.gz" : ".jsonl");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(out, 8192)) {
+                    chatExportService.export(userId, images, compressed);
+                }
+            } else {
+                chatExportService.export(userId, images, out);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build()
+                        .toString())
+                .cacheControl(CacheControl.noStore())
+                .body(body);
+    }
+
+    /**
+     * Keyset-paginated history without image payloads (images load lazily from
+     * /api/chat/messages/{id}/image). Without "before" it returns the newest page and
+     * supports conditional GET: the ETag is the cursor of the user's newest message.
+     *
+     * @param before    Cursor of the oldest message already shown (from "olderCursor"), optional.
+     * @param limit     Page size (max 200).
+     * @param principal The authenticated user's principal.
+     * @param request   Used to answer 304 Not Modified when the ETag still matches.
+     * @return A page of messages, oldest first, with cursors for the next requests.
+     */
+    @GetMapping("/history/page")
+    @ResponseBody
+    public ResponseEntity<ChatHistoryPage> getChatHistoryPage(@RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "limit", defaultValue = "50") int limit, Principal principal, WebRequest request) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String userId = principal.getName();
+        if (before != null) {
+            return ResponseEntity.ok(chatService.getChatHistoryPage(userId, before, limit));
+        }
+        String etag = historyEtag(chatService.getLatestHistoryCursor(userId));
+        if (request.checkNotModified(etag)) {
+            return null; // 304 already written
+        }
+        ChatHistoryPage page = chatService.getChatHistoryPage(userId, null, limit);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(page);
+    }
+
+    /**
+     * Delta sync: only the messages added after {@code cursor}. Answers 304 Not Modified
+     * when the client's ETag (If-None-Match) matches the newest message.
+     *
+     * @param cursor    The "newestCursor" the client already has.
+     * @param limit     Maximum number of messages (max 200).
+     * @param principal The authenticated user's principal.
+     * @param request   Used for the conditional GET.
+     * @return The new messages, oldest first, and the cursor to use next time.
+     */
+    @GetMapping("/history/since")
+    @ResponseBody
+    public ResponseEntity<ChatHistoryPage> getChatHistorySince(@RequestParam("cursor") String cursor,
+            @RequestParam(value = "limit", defaultValue = "200") int limit, Principal principal, WebRequest request) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String userId = principal.getName();
+        String etag = historyEtag(chatService.getLatestHistoryCursor(userId));
+        if (request.checkNotModified(etag)) {
+            return null; // 304 already written
+        }
+        ChatHistoryPage delta = chatService.getChatHistorySince(userId, cursor, limit);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(delta);
+    }
+
+    /**
+     * Image attached to one of the user's messages.
+     * Messages that reference the ImageStore are redirected to /api/chat/images/{imageId};
+     * legacy messages with inline Base64 are decoded and served directly.
+     *
+     * @param id        The message id.
+     * @param principal The authenticated user's principal.
+     * @return The image, a redirect, or 404 if the message has no image or belongs to someone else.
+     */
+    @GetMapping("/messages/{id}/image")
+    @ResponseBody
+    public ResponseEntity<byte[]> getMessageImage(@PathVariable("id") String id, Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Optional<ChatMessage> message = chatService.getUserMessage(principal.getName(), id);
+        if (message.isPresent() && message.get().getImageId() != null) {
+            return ResponseEntity.status(HttpStatus.MOVED_PERMANENTLY)
+                    .location(URI.create("/api/chat/images/" + message.get().getImageId()))
+                    .build();
+        }
+        return message.map(ChatMessage::getImageBase64)
+                .filter(base64 -> !base64.isEmpty())
+                .map(base64 -> Base64.getMimeDecoder().decode(base64))
+                .map(bytes -> ResponseEntity.ok()
+                        .contentType(ImageStore.detectContentType(bytes))
+                        .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                        .eTag(id)
+                        .body(bytes))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Streams an image from the content-addressed ImageStore. The id is the SHA-256 of the
+     * content, so the response never changes and can be cached "forever".
+     *
+     * @param imageId   SHA-256 of the image.
+     * @param principal The authenticated user's principal; one of their messages must reference the image.
+     * @return The image bytes, or 404.
+     */
+    @GetMapping("/images/{imageId}")
+    @ResponseBody
+    public ResponseEntity<Resource> getStoredImage(@PathVariable("imageId") String imageId, Principal principal,
+            WebRequest request) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (request.checkNotModified(imageId)) {
+            return null; // Content-addressed: same id, same bytes
+        }
+        return chatService.getStoredImage(principal.getName(), imageId)
+                .map(resource -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(resource.getContentType()))
+                        .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                        .eTag(imageId)
+                        .<Resource>body(resource))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private static String historyEtag(String latestCursor) {
+        return latestCursor != null ? latestCursor : "empty";
+    }
+
+    /**
+     * Current state of the LLM admission queue (active slots, queue depth, wait times).
+     * Used to size the inference hardware.
+     *
+     * @return A map of scheduler statistics.
+     */
+    @GetMapping("/queue")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getQueueStats() {
+        return ResponseEntity.ok(admissionScheduler.getStats());
+    }
+
+    /**
+     * Identical requests sharing one LLM call (leaders, followers, calls running now).
+     *
+     * @return A map of coalescing statistics.
+     */
+    @GetMapping("/coalescing")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getCoalescingStats() {
+        return ResponseEntity.ok(llmRequestCoalescer.getStats());
+    }
+
+    /**
+     * The LLM service instances requests are balanced over, with their circuit state and load.
+     *
+     * @return One map of statistics per backend.
+     */
+    @GetMapping("/backends")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> getBackendStats() {
+        return ResponseEntity.ok(llmClient.getBackendStats());
+    }
+
+    /**
+     * Archival of old messages into compressed buckets (horizon, runs, messages moved).
+     *
+     * @return A map of archive statistics.
+     */
+    @GetMapping("/archive")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getArchiveStats() {
+        return ResponseEntity.ok(chatArchiveService.getStats());
+    }
+
+    /**
+     * Downscaling of uploaded images before they go to the LLM (processed, fallbacks, size saved).
+     *
+     * @return A map of image preprocessing statistics.
+     */
+    @GetMapping("/image-preprocessing")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getImagePreprocessingStats() {
+        return ResponseEntity.ok(imagePreprocessor.getStats());
+    }
+
+    /**
+     * Hit/miss statistics of the in-memory conversation context cache.
+     *
+     * @return A map of cache statistics.
+     */
+    @GetMapping("/context-cache")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getContextCacheStats() {
+        return ResponseEntity.ok(recentConversationCache.getStats());
+    }
+
+    /**
+     * Statistics of the LLM response cache, including the most frequently hit entries (by
+     * prompt hash). Admins only: the cache is shared by all users.
+     *
+     * @param top How many top entries to list.
+     * @return A map of cache statistics.
+     */
+    @GetMapping("/response-cache")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getResponseCacheStats(@RequestParam(defaultValue = "10") int top) {
+        return ResponseEntity.ok(llmResponseCache.getStats(Math.max(0, Math.min(top, 100))));
+    }
+
+    /**
+     * State of the in-app retrieval index (chunks, search latency).
+     *
+     * @return A map of retrieval statistics.
+     */
+    @GetMapping("/retrieval")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getRetrievalStats() {
+        return ResponseEntity.ok(retrievalService.getStats());
+    }
+
+    /**
+     * Re-indexes the RAG documents in the Python service and invalidates cached answers.
+     * Admins only: a full re-ingest is expensive.
+     *
+     * @return The reload status from the Python service.
+     */
+    @PostMapping("/documents/reload")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<String> reloadDocuments() {
+        try {
+            return ResponseEntity.ok(chatService.reloadDocuments());
+        } catch (Exception e) {
+            System.out.println("Document reload failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body("Document reload failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The LLM queue is full: answer 429 with a Retry-After hint instead of queueing forever.
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    @ResponseBody
+    public ResponseEntity<String> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    /**
+     * Malformed history cursor.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseBody
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
 }
@@ -0,0 +1,259 @@
+package com.collegeproject.chatgptclone.controller;
+
+import com.collegeproject.chatgptclone.service.AdmissionRejectedException;
+import com.collegeproject.chatgptclone.service.ChatService;
+import com.collegeproject.chatgptclone.service.ImageUpload;
+import com.collegeproject.chatgptclone.service.LlmAdmissionScheduler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * /ws/chat: one authenticated connection carries any number of concurrent chat requests,
+ * so the page does not pay a request (filter chain, headers, TLS record) per message and cancel.
+ * Frames are JSON text messages tagged with the client's requestId:
+ * - client: {"type": "send", "requestId", "message", "imageBase64"?} and {"type": "cancel", "requestId"}
+ * - server: {"type": "token", "requestId", "t"} while the reply is generated, then
+ *   {"type": "done", "requestId", "response"}, or {"type": "error", "requestId", "status", "message"}
+ *   (status 429 also carries "retryAfter" in seconds)
+ * Replies run on the task executor like the SSE endpoint; frames of concurrent replies are
+ * serialized through a ConcurrentWebSocketSessionDecorator, which closes a connection whose
+ * client reads too slowly. Closing the connection cancels everything still running on it.
+ */
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+
+    private final ChatService chatService;
+    private final AsyncTaskExecutor taskExecutor;
+    private final ObjectMapper objectMapper;
+    private final int maxMessageSize;
+    private final int maxRequestsPerConnection;
+    private final int sendTimeLimitMs;
+    private final int sendBufferLimit;
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>(); // session id -> connection
+    private final AtomicInteger openRequests = new AtomicInteger();
+
+    public ChatWebSocketHandler(ChatService chatService,
+            @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor, ObjectMapper objectMapper,
+            @Value("${chat.websocket.max-message-size:1MB}") DataSize maxMessageSize,
+            @Value("${chat.websocket.max-requests-per-connection:16}") int maxRequestsPerConnection,
+            @Value("${chat.websocket.send-time-limit:10s}") Duration sendTimeLimit,
+            @Value("${chat.websocket.send-buffer-limit:512KB}") DataSize sendBufferLimit) {
+        this.chatService = chatService;
+        this.taskExecutor = taskExecutor;
+        this.objectMapper = objectMapper;
+        this.maxMessageSize = (int) maxMessageSize.toBytes();
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.sendTimeLimitMs = (int) sendTimeLimit.toMillis();
+        this.sendBufferLimit = (int) sendBufferLimit.toBytes();
+    }
+
+    /**
+     * Frames arrive in pieces of the container's buffer size and are joined in
+     * {@link #handleTextMessage}, so the size limit is {@code chat.websocket.max-message-size}
+     * (in characters) rather than the container's text buffer.
+     */
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        Principal principal = session.getPrincipal();
+        if (principal == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Not authenticated"));
+            return;
+        }
+        connections.put(session.getId(), new Connection(principal.getName(),
+                new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferLimit)));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        Connection connection = connections.get(session.getId());
+        if (connection == null) {
+            return;
+        }
+        StringBuilder frame = connection.partialFrame;
+        if (frame.length() + message.getPayload().length() > maxMessageSize) {
+            session.close(CloseStatus.TOO_BIG_TO_PROCESS.withReason("Frames are limited to " + maxMessageSize
+                    + " characters"));
+            return;
+        }
+        frame.append(message.getPayload());
+        if (!message.isLast()) {
+            return;
+        }
+        String payload = frame.toString();
+        frame.setLength(0);
+
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            send(connection, error(null, HttpStatus.BAD_REQUEST, "Malformed frame"));
+            return;
+        }
+        String requestId = json.path("requestId").asText(null);
+        switch (json.path("type").asText("")) {
+            case "send" -> startRequest(connection, requestId, json.path("message").asText(null),
+                    json.path("imageBase64").asText(null));
+            case "cancel" -> {
+                if (requestId != null && !requestId.isEmpty()) {
+                    chatService.cancelRequest(connection.userId, requestId);
+                }
+            }
+            default -> send(connection, error(requestId, HttpStatus.BAD_REQUEST, "Unknown frame type"));
+        }
+    }
+
+    private void startRequest(Connection connection, String clientRequestId, String userMessage, String imageBase64) {
+        String requestId = clientRequestId != null ? clientRequestId : UUID.randomUUID().toString();
+        if ((userMessage == null || userMessage.trim().isEmpty()) && (imageBase64 == null || imageBase64.isEmpty())) {
+            send(connection, error(requestId, HttpStatus.BAD_REQUEST, "Message or Image is required."));
+            return;
+        }
+        ImageUpload image;
+        try {
+            image = ImageUpload.ofBase64(imageBase64); // Before a slot is reserved, so a bad image costs nothing
+        } catch (IllegalArgumentException e) {
+            send(connection, error(requestId, HttpStatus.BAD_REQUEST, "Invalid image data"));
+            return;
+        }
+        if (connection.requests.size() >= maxRequestsPerConnection || !connection.requests.add(requestId)) {
+            closeQuietly(image);
+            send(connection, error(requestId, HttpStatus.TOO_MANY_REQUESTS,
+                    "Too many requests on this connection (or a duplicate requestId)"));
+            return;
+        }
+        System.out.println("Received WebSocket message from " + connection.userId + " (ID: " + requestId + "): "
+                + userMessage);
+
+        CompletableFuture<LlmAdmissionScheduler.Permit> admission;
+        try {
+            admission = chatService.reserveLlmSlot(connection.userId);
+        } catch (AdmissionRejectedException e) {
+            closeQuietly(image);
+            connection.requests.remove(requestId);
+            send(connection, error(requestId, HttpStatus.TOO_MANY_REQUESTS, e.getMessage())
+                    .put("retryAfter", e.getRetryAfterSeconds()));
+            return;
+        }
+        openRequests.incrementAndGet();
+        try {
+            runRequest(connection, requestId, userMessage, image, admission);
+        } catch (TaskRejectedException e) {
+            // Executor saturated or shutting down: give the slot back and let the client retry
+            chatService.releaseLlmSlot(admission);
+            closeQuietly(image);
+            connection.requests.remove(requestId);
+            openRequests.decrementAndGet();
+            send(connection, error(requestId, HttpStatus.SERVICE_UNAVAILABLE, "Server busy, please retry"));
+        }
+    }
+
+    private void runRequest(Connection connection, String requestId, String userMessage, ImageUpload image,
+            CompletableFuture<LlmAdmissionScheduler.Permit> admission) {
+        taskExecutor.execute(() -> {
+            try {
+                String botResponse = chatService.streamMessage(connection.userId, userMessage, requestId,
+                        image, admission, token -> {
+                            if (!send(connection, frame("token", requestId).put("t", token))) {
+                                // Connection gone: stop the generation
+                                chatService.cancelRequest(connection.userId, requestId);
+                            }
+                        });
+                send(connection, frame("done", requestId).put("response", botResponse));
+            } catch (IllegalArgumentException e) {
+                send(connection, error(requestId, HttpStatus.BAD_REQUEST, e.getMessage()));
+            } catch (RuntimeException e) {
+                System.out.println("WebSocket request " + requestId + " failed: " + e.getMessage());
+                send(connection, error(requestId, HttpStatus.INTERNAL_SERVER_ERROR, "The request failed"));
+            } finally {
+                closeQuietly(image);
+                connection.requests.remove(requestId);
+                openRequests.decrementAndGet();
+            }
+        });
+    }
+
+    private static void closeQuietly(ImageUpload image) {
+        if (image != null) {
+            image.close();
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection connection = connections.remove(session.getId());
+        if (connection != null) {
+            connection.requests.forEach(requestId -> chatService.cancelRequest(connection.userId, requestId));
+        }
+    }
+
+    public int getOpenConnectionCount() {
+        return connections.size();
+    }
+
+    public int getOpenRequestCount() {
+        return openRequests.get();
+    }
+
+    /**
+     * @return false if the frame could not be sent (connection closed, or the client is too slow).
+     */
+    private boolean send(Connection connection, ObjectNode frame) {
+        try {
+            connection.session.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+            return true;
+        } catch (IOException | IllegalStateException | SessionLimitExceededException e) {
+            return false;
+        }
+    }
+
+    private ObjectNode frame(String type, String requestId) {
+        return objectMapper.createObjectNode().put("type", type).put("requestId", requestId);
+    }
+
+    private ObjectNode error(String requestId, HttpStatus status, String message) {
+        return frame("error", requestId).put("status", status.value()).put("message", message);
+    }
+
+    private static final class Connection {
+        private final String userId;
+        private final WebSocketSession session; // Thread-safe decorator
+        private final Set<String> requests = ConcurrentHashMap.newKeySet(); // Running on this connection
+        private final StringBuilder partialFrame = new StringBuilder(); // Only touched by the container's reader
+
+        private Connection(String userId, WebSocketSession session) {
+            this.userId = userId;
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.collegeproject.chatgptclone.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in a user's chat history: (timestamp, id) of a message.
+ * The id breaks ties between messages saved in the same millisecond.
+ * Sent to the client as an opaque URL-safe string.
+ */
+public record ChatCursor(LocalDateTime timestamp, String id) implements Comparable<ChatCursor> {
+
+    public static ChatCursor of(ChatMessageView message) {
+        return new ChatCursor(message.getTimestamp(), message.getId());
+    }
+
+    public static ChatCursor of(ChatMessage message) {
+        return new ChatCursor(message.getTimestamp(), message.getId());
+    }
+
+    /**
+     * History order, as MongoDB sorts by (timestamp, _id): ObjectId hex strings compare like the ids.
+     */
+    @Override
+    public int compareTo(ChatCursor other) {
+        int byTime = timestamp.compareTo(other.timestamp);
+        return byTime != 0 ? byTime : id.compareTo(other.id);
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}.
+     */
+    public static ChatCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new ChatCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid history cursor: " + cursor);
+        }
+    }
+}
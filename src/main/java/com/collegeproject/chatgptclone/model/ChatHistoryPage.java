@@ -0,0 +1,20 @@
+package com.collegeproject.chatgptclone.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of chat history, oldest message first.
+ * - {@code olderCursor}: pass as "before" to load the previous page (null when there is none)
+ * - {@code newestCursor}: pass as "cursor" to /history/since to fetch only newer messages
+ */
+@Data
+@AllArgsConstructor
+public class ChatHistoryPage {
+
+    private List<ChatMessageView> messages;
+    private String olderCursor;
+    private String newestCursor;
+}
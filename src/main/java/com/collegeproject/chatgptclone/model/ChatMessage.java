@@ -3,6 +3,7 @@ package com.collegeproject.chatgptclone.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -14,6 +15,8 @@ import java.time.LocalDateTime;
  */
 @Data // Generates getters, setters, toString, equals, and hashCode methods
 @Document(collection = "chat_messages") // Specifies the MongoDB collection name
+// Serves every per-user history query, including the (timestamp, _id) keyset pages
+@CompoundIndex(name = "userId_timestamp", def = "{ 'userId': 1, 'timestamp': 1, '_id': 1 }")
 public class ChatMessage {
 
     @Id // Marks this field as the primary identifier for the document
@@ -22,7 +25,8 @@ public class ChatMessage {
     private String userId; // NEW: ID of the user this message belongs to
     private String sender; // e.g., "user", "bot"
     private String message;
-    private String imageBase64; // NEW: Store image data if present
+    private String imageBase64; // LEGACY: inline image data; new messages use imageId instead
+    private String imageId; // SHA-256 of the image in the ImageStore (GridFS), if present
     private LocalDateTime timestamp; // Timestamp when the message was created
 
     // Default constructor (required by Spring Data MongoDB)
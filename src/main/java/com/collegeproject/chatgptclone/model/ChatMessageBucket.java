@@ -0,0 +1,49 @@
+package com.collegeproject.chatgptclone.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Archived chat messages: a run of one user's messages from one calendar month, stored as
+ * one gzip-compressed JSON array instead of one document per message.
+ * Written by ChatArchiveService; the id is "userId:firstMessageId", so compacting the same
+ * messages again overwrites the bucket instead of duplicating it.
+ */
+@Data
+@Document(collection = "chat_messages_archive")
+@CompoundIndexes({
+        @CompoundIndex(name = "userId_lastTimestamp", def = "{ 'userId': 1, 'lastTimestamp': 1 }"),
+        @CompoundIndex(name = "userId_messageIds", def = "{ 'userId': 1, 'messageIds': 1 }"),
+        @CompoundIndex(name = "userId_imageIds", def = "{ 'userId': 1, 'imageIds': 1 }")
+})
+public class ChatMessageBucket {
+
+    @Id
+    private String id;
+
+    private String userId;
+    private String month; // e.g. "2025-03"
+    private LocalDateTime firstTimestamp;
+    private String firstId;
+    private LocalDateTime lastTimestamp;
+    private String lastId;
+    private int count;
+    private List<String> messageIds; // For lookups of a single archived message
+    private List<String> imageIds; // Stored images the messages reference
+    private int rawSize; // Uncompressed JSON bytes
+    private byte[] messages; // gzip(JSON array of ChatMessage), oldest first
+
+    public ChatCursor firstCursor() {
+        return new ChatCursor(firstTimestamp, firstId);
+    }
+
+    public ChatCursor lastCursor() {
+        return new ChatCursor(lastTimestamp, lastId);
+    }
+}
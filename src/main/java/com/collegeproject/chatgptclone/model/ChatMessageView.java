@@ -0,0 +1,36 @@
+package com.collegeproject.chatgptclone.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight projection of a ChatMessage for history pages.
+ * The image payload is left out; {@code hasImage} tells the UI to load it lazily, from
+ * /api/chat/images/{imageId} (or /api/chat/messages/{id}/image for legacy inline images).
+ */
+@Data
+public class ChatMessageView {
+
+    private String id;
+    private String sender;
+    private String message;
+    private LocalDateTime timestamp;
+    private String imageId;
+    private boolean hasImage;
+
+    /**
+     * The view of a message already in memory (e.g. read from the archive).
+     */
+    public static ChatMessageView of(ChatMessage message) {
+        ChatMessageView view = new ChatMessageView();
+        view.setId(message.getId());
+        view.setSender(message.getSender());
+        view.setMessage(message.getMessage());
+        view.setTimestamp(message.getTimestamp());
+        view.setImageId(message.getImageId());
+        view.setHasImage(message.getImageId() != null
+                || (message.getImageBase64() != null && !message.getImageBase64().isEmpty()));
+        return view;
+    }
+}
@@ -2,6 +2,7 @@ package com.collegeproject.chatgptclone.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Set; // Used for roles
@@ -12,6 +13,7 @@ public class User {
 
     @Id // Marks this field as the primary identifier
     private String id;
+    @Indexed(unique = true) // Registration relies on it to reject duplicates in one round trip
     private String username; // User's unique username
     private String password; // Hashed password
     private Set<String> roles; // Roles (e.g., "USER", "ADMIN"). Using Set<String> for simplicity.
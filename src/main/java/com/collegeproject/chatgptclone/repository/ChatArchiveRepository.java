@@ -0,0 +1,38 @@
+package com.collegeproject.chatgptclone.repository;
+
+import com.collegeproject.chatgptclone.model.ChatMessageBucket;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data MongoDB repository for archived message buckets (chat_messages_archive).
+ */
+@Repository
+public interface ChatArchiveRepository extends MongoRepository<ChatMessageBucket, String> {
+
+    /**
+     * A user's buckets without their payload and id lists, to decide which ones to decompress.
+     */
+    @Query(value = "{ 'userId': ?0 }", fields = "{ 'messages': 0, 'messageIds': 0, 'imageIds': 0 }")
+    List<ChatMessageBucket> findSummariesByUserId(String userId, Sort sort);
+
+    /**
+     * The bucket holding an archived message, if the user owns it.
+     */
+    Optional<ChatMessageBucket> findFirstByUserIdAndMessageIds(String userId, String messageId);
+
+    /**
+     * Whether the user's archive holds the given message.
+     */
+    boolean existsByUserIdAndMessageIds(String userId, String messageId);
+
+    /**
+     * Whether an archived message of the user references the given stored image.
+     */
+    boolean existsByUserIdAndImageIds(String userId, String imageId);
+}
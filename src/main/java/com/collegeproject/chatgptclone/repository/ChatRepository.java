@@ -25,17 +25,23 @@
 package com.collegeproject.chatgptclone.repository;
 
 import com.collegeproject.chatgptclone.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Spring Data MongoDB repository for ChatMessage documents.
  * Provides standard CRUD operations and custom query methods.
+ * Paginated, image-free history queries come from {@link ChatRepositoryCustom}.
  */
 @Repository // Marks this interface as a Spring Data repository
-public interface ChatRepository extends MongoRepository<ChatMessage, String> {
+public interface ChatRepository extends MongoRepository<ChatMessage, String>, ChatRepositoryCustom {
 
     /**
      * Finds all chat messages, ordered by timestamp in ascending order.
@@ -68,4 +74,33 @@ public interface ChatRepository extends MongoRepository<ChatMessage, String> {
      * Used for optimized conversational context.
      */
     List<ChatMessage> findTop5ByUserIdOrderByTimestampDesc(String userId);
+
+    /**
+     * A user's messages without legacy inline images, paged and sorted by the caller.
+     * Used to (re)seed the in-memory conversation context.
+     */
+    @Query(value = "{ 'userId': ?0 }", fields = "{ 'imageBase64': 0 }")
+    List<ChatMessage> findByUserId(String userId, Pageable pageable);
+
+    /**
+     * A user's messages without legacy inline images, read lazily through a Mongo cursor
+     * (batches of 200 documents) for exports. The caller must close the stream.
+     */
+    @Meta(cursorBatchSize = 200)
+    @Query(value = "{ 'userId': ?0 }", fields = "{ 'imageBase64': 0 }")
+    Stream<ChatMessage> streamWithoutImagesByUserId(String userId, Sort sort);
+
+    /**
+     * Like {@link #streamWithoutImagesByUserId} but with legacy inline images, so in small
+     * batches. The caller must close the stream.
+     */
+    @Meta(cursorBatchSize = 20)
+    @Query("{ 'userId': ?0 }")
+    Stream<ChatMessage> streamByUserId(String userId, Sort sort);
+
+    /**
+     * Whether one of the user's messages references the given stored image.
+     * Used to authorize /api/chat/images/{hash}.
+     */
+    boolean existsByUserIdAndImageId(String userId, String imageId);
 }
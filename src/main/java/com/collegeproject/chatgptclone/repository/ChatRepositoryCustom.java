@@ -0,0 +1,30 @@
+package com.collegeproject.chatgptclone.repository;
+
+import com.collegeproject.chatgptclone.model.ChatCursor;
+import com.collegeproject.chatgptclone.model.ChatMessageView;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keyset-paginated history queries that project out the image payload.
+ * Implemented with MongoTemplate in {@link ChatRepositoryCustomImpl}.
+ */
+public interface ChatRepositoryCustom {
+
+    /**
+     * Up to {@code limit} messages older than {@code before} (or the newest ones if null),
+     * newest first.
+     */
+    List<ChatMessageView> findViewsBefore(String userId, ChatCursor before, int limit);
+
+    /**
+     * Up to {@code limit} messages newer than {@code after}, oldest first.
+     */
+    List<ChatMessageView> findViewsAfter(String userId, ChatCursor after, int limit);
+
+    /**
+     * Position of the user's newest message; used as the history ETag.
+     */
+    Optional<ChatCursor> findLatestCursor(String userId);
+}
@@ -0,0 +1,78 @@
+package com.collegeproject.chatgptclone.repository;
+
+import com.collegeproject.chatgptclone.model.ChatCursor;
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.model.ChatMessageView;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoExpression;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * MongoTemplate implementation of {@link ChatRepositoryCustom}.
+ * Pages are selected with a (timestamp, _id) keyset instead of skip/offset, so every
+ * page costs the same no matter how deep the user scrolls.
+ */
+public class ChatRepositoryCustomImpl implements ChatRepositoryCustom {
+
+    // Computed server-side, so a legacy inline Base64 image never leaves MongoDB
+    private static final MongoExpression HAS_IMAGE = MongoExpression.create(
+            "{ $or: [ { $gt: [ '$imageId', null ] },"
+                    + " { $gt: [ { $strLenBytes: { $ifNull: [ '$imageBase64', '' ] } }, 0 ] } ] }");
+
+    private final MongoTemplate mongoTemplate;
+
+    public ChatRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<ChatMessageView> findViewsBefore(String userId, ChatCursor before, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (before != null) {
+            criteria = criteria.orOperator(
+                    Criteria.where("timestamp").lt(before.timestamp()),
+                    Criteria.where("timestamp").is(before.timestamp()).and("_id").lt(new ObjectId(before.id())));
+        }
+        Query query = viewQuery(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, ChatMessageView.class, collection());
+    }
+
+    @Override
+    public List<ChatMessageView> findViewsAfter(String userId, ChatCursor after, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId).orOperator(
+                Criteria.where("timestamp").gt(after.timestamp()),
+                Criteria.where("timestamp").is(after.timestamp()).and("_id").gt(new ObjectId(after.id())));
+        Query query = viewQuery(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "timestamp", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, ChatMessageView.class, collection());
+    }
+
+    @Override
+    public Optional<ChatCursor> findLatestCursor(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "_id"))
+                .limit(1);
+        query.fields().include("timestamp");
+        ChatMessageView latest = mongoTemplate.findOne(query, ChatMessageView.class, collection());
+        return Optional.ofNullable(latest).map(ChatCursor::of);
+    }
+
+    private static Query viewQuery(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("sender", "message", "timestamp", "imageId").projectAs(HAS_IMAGE, "hasImage");
+        return query;
+    }
+
+    private String collection() {
+        return mongoTemplate.getCollectionName(ChatMessage.class);
+    }
+}
@@ -0,0 +1,296 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * BM25 inverted index over chunk texts, for lexical matches that embeddings miss
+ * (class names, identifiers, option letters).
+ * - Posting lists are byte arrays of varint-encoded (doc-id delta, term frequency) pairs,
+ *   with a skip entry every {@value #BLOCK} postings so a cursor can jump ahead.
+ * - Each term stores the highest score any of its postings can contribute, and
+ *   {@link #search} uses MaxScore: once the top-k threshold is higher than what the
+ *   low-impact terms can add together, documents are only discovered through the
+ *   remaining ("essential") terms, and the others are only probed for those candidates.
+ * Immutable after {@link #build}, so searches need no locking.
+ */
+public class Bm25Index {
+
+    static final int BLOCK = 64;
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final Map<String, Term> terms;
+    private final float[] lengthNorm; // k1 * (1 - b + b * length / avgLength), per document
+    private final float k1;
+
+    private Bm25Index(Map<String, Term> terms, float[] lengthNorm, float k1) {
+        this.terms = terms;
+        this.lengthNorm = lengthNorm;
+        this.k1 = k1;
+    }
+
+    /**
+     * Indexes documents 0..count-1.
+     *
+     * @param texts Returns the text of a document; called twice per document.
+     */
+    public static Bm25Index build(int count, IntFunction<String> texts, float k1, float b) {
+        // Pass 1: document lengths
+        int[] lengths = new int[count];
+        long totalLength = 0;
+        for (int doc = 0; doc < count; doc++) {
+            lengths[doc] = tokenize(texts.apply(doc)).size();
+            totalLength += lengths[doc];
+        }
+        float avgLength = count == 0 ? 1 : Math.max(1, (float) totalLength / count);
+        float[] lengthNorm = new float[count];
+        for (int doc = 0; doc < count; doc++) {
+            lengthNorm[doc] = k1 * (1 - b + b * lengths[doc] / avgLength);
+        }
+
+        // Pass 2: postings, appended in increasing doc order
+        Map<String, TermBuilder> builders = new HashMap<>();
+        for (int doc = 0; doc < count; doc++) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokenize(texts.apply(doc))) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                builders.computeIfAbsent(entry.getKey(), t -> new TermBuilder()).add(doc, entry.getValue());
+            }
+        }
+
+        Map<String, Term> terms = new HashMap<>(builders.size() * 2);
+        for (Map.Entry<String, TermBuilder> entry : builders.entrySet()) {
+            TermBuilder builder = entry.getValue();
+            float idf = (float) Math.log(1 + (count - builder.count + 0.5) / (builder.count + 0.5));
+            float maxScore = 0;
+            for (int i = 0; i < builder.count; i++) {
+                int tf = builder.frequencies[i];
+                maxScore = Math.max(maxScore, idf * tf * (k1 + 1) / (tf + lengthNorm[builder.docs[i]]));
+            }
+            terms.put(entry.getKey(), builder.toTerm(idf, maxScore));
+        }
+        return new Bm25Index(terms, lengthNorm, k1);
+    }
+
+    /**
+     * Top-k documents for the query, best first.
+     */
+    public List<Hit> search(String query, int k) {
+        List<Cursor> cursors = new ArrayList<>();
+        for (String token : new LinkedHashSet<>(tokenize(query))) {
+            Term term = terms.get(token);
+            if (term != null) {
+                cursors.add(new Cursor(term));
+            }
+        }
+        if (cursors.isEmpty() || k <= 0) {
+            return List.of();
+        }
+        // Lowest-impact terms first; bounds[i] = most that terms 0..i can add together
+        cursors.sort((a, b) -> Float.compare(a.term.maxScore, b.term.maxScore));
+        int n = cursors.size();
+        float[] bounds = new float[n];
+        for (int i = 0; i < n; i++) {
+            bounds[i] = cursors.get(i).term.maxScore + (i > 0 ? bounds[i - 1] : 0);
+            cursors.get(i).next();
+        }
+
+        HnswIndex.ScoredHeap top = new HnswIndex.ScoredHeap(k + 1, false); // lowest score on top
+        float threshold = 0;
+        int firstEssential = 0;
+        while (firstEssential < n) {
+            int doc = NO_MORE_DOCS;
+            for (int i = firstEssential; i < n; i++) {
+                doc = Math.min(doc, cursors.get(i).doc);
+            }
+            if (doc == NO_MORE_DOCS) {
+                break;
+            }
+            float score = 0;
+            for (int i = firstEssential; i < n; i++) {
+                Cursor cursor = cursors.get(i);
+                if (cursor.doc == doc) {
+                    score += cursor.score();
+                    cursor.next();
+                }
+            }
+            // Non-essential terms: probe only while they could still lift the doc into the top k
+            for (int i = firstEssential - 1; i >= 0 && score + bounds[i] > threshold; i--) {
+                Cursor cursor = cursors.get(i);
+                cursor.advance(doc);
+                if (cursor.doc == doc) {
+                    score += cursor.score();
+                }
+            }
+            if (top.size() < k || score > threshold) {
+                top.push(doc, score);
+                if (top.size() > k) {
+                    top.pop();
+                }
+                if (top.size() == k) {
+                    threshold = top.topScore();
+                    while (firstEssential < n && bounds[firstEssential] <= threshold) {
+                        firstEssential++;
+                    }
+                }
+            }
+        }
+
+        int[] ids = top.idsBestFirst();
+        float[] scores = top.scoresBestFirst();
+        List<Hit> hits = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            hits.add(new Hit(ids[i], scores[i]));
+        }
+        return hits;
+    }
+
+    public int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Lower-cased runs of letters and digits; single characters are kept so option
+     * letters ("a", "b") and numbers stay searchable.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                current.append(Character.toLowerCase(c));
+            } else if (!current.isEmpty()) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    public record Hit(int id, float score) {
+    }
+
+    /**
+     * A term's compressed postings plus its skip entries: after block i, the last doc id
+     * is skipDocs[i] and the next posting starts at byte skipOffsets[i].
+     */
+    private record Term(byte[] postings, int count, int[] skipDocs, int[] skipOffsets, float idf, float maxScore) {
+    }
+
+    private static final class TermBuilder {
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int count;
+
+        void add(int doc, int frequency) {
+            if (count == docs.length) {
+                docs = Arrays.copyOf(docs, count * 2);
+                frequencies = Arrays.copyOf(frequencies, count * 2);
+            }
+            docs[count] = doc;
+            frequencies[count++] = frequency;
+        }
+
+        Term toTerm(float idf, float maxScore) {
+            byte[] bytes = new byte[count * 2 + 8];
+            int position = 0;
+            int[] skipDocs = new int[count / BLOCK];
+            int[] skipOffsets = new int[skipDocs.length];
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                if (bytes.length - position < 10) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                position = writeVarint(bytes, position, docs[i] - previous);
+                position = writeVarint(bytes, position, frequencies[i]);
+                previous = docs[i];
+                if ((i + 1) % BLOCK == 0 && (i + 1) / BLOCK <= skipDocs.length) {
+                    skipDocs[(i + 1) / BLOCK - 1] = docs[i];
+                    skipOffsets[(i + 1) / BLOCK - 1] = position;
+                }
+            }
+            return new Term(Arrays.copyOf(bytes, position), count, skipDocs, skipOffsets, idf, maxScore);
+        }
+
+        private static int writeVarint(byte[] bytes, int position, int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+            return position;
+        }
+    }
+
+    /**
+     * Decodes one term's postings on the fly.
+     */
+    private final class Cursor {
+        private final Term term;
+        private int position;
+        private int consumed;
+        private int doc = -1;
+        private int frequency;
+
+        Cursor(Term term) {
+            this.term = term;
+        }
+
+        void next() {
+            if (consumed == term.count()) {
+                doc = NO_MORE_DOCS;
+                return;
+            }
+            int base = Math.max(doc, 0);
+            doc = base + readVarint();
+            frequency = readVarint();
+            consumed++;
+        }
+
+        /**
+         * Moves to the first posting with doc id >= target, skipping whole blocks when possible.
+         */
+        void advance(int target) {
+            int block = consumed / BLOCK;
+            while (block < term.skipDocs().length && term.skipDocs()[block] < target) {
+                // Everything up to the end of this block is before the target
+                doc = term.skipDocs()[block];
+                position = term.skipOffsets()[block];
+                consumed = (block + 1) * BLOCK;
+                block++;
+            }
+            while (doc < target) {
+                next();
+            }
+        }
+
+        float score() {
+            return term.idf() * frequency * (k1 + 1) / (frequency + lengthNorm[doc]);
+        }
+
+        private int readVarint() {
+            byte[] bytes = term.postings();
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
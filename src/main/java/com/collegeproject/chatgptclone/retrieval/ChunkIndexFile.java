@@ -0,0 +1,198 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The persisted retrieval index: source files, chunk table, HNSW graph with its vectors,
+ * and chunk texts in one file that is memory-mapped on open.
+ * Opening copies the vectors and neighbour lists out of the mapping in bulk (no
+ * re-embedding, no graph construction); chunk texts stay in the mapping and are decoded
+ * only when a chunk is returned as context.
+ * <pre>
+ * int magic, int version
+ * int fileCount, then per file: string path, string hash, long size, long modified, int firstChunk, int chunkCount
+ * int chunkCount, then per chunk: int fileIndex, int page, long textOffset, int textLength
+ * HNSW index (see HnswIndex#writeTo)
+ * long textBytes, then the UTF-8 texts
+ * </pre>
+ * Strings are an int byte length followed by UTF-8 bytes; all numbers are big-endian.
+ */
+public final class ChunkIndexFile {
+
+    private static final int MAGIC = 0x43484E4B; // "CHNK"
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final List<SourceFile> files;
+    private final int[] chunkFile;
+    private final int[] chunkPage;
+    private final long[] textOffset;
+    private final int[] textLength;
+    private final HnswIndex index;
+    private final ByteBuffer texts;
+
+    private ChunkIndexFile(Path path, List<SourceFile> files, int[] chunkFile, int[] chunkPage, long[] textOffset,
+            int[] textLength, HnswIndex index, ByteBuffer texts) {
+        this.path = path;
+        this.files = files;
+        this.chunkFile = chunkFile;
+        this.chunkPage = chunkPage;
+        this.textOffset = textOffset;
+        this.textLength = textLength;
+        this.index = index;
+        this.texts = texts;
+    }
+
+    /**
+     * Maps an index file written by {@link #write}.
+     *
+     * @throws IOException if the file is missing, truncated, or in another format.
+     */
+    public static ChunkIndexFile open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after close
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a chunk index file (or an older version): " + path);
+            }
+            int fileCount = buffer.getInt();
+            List<SourceFile> files = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                files.add(new SourceFile(readString(buffer), readString(buffer), buffer.getLong(), buffer.getLong(),
+                        buffer.getInt(), buffer.getInt()));
+            }
+            int chunkCount = buffer.getInt();
+            int[] chunkFile = new int[chunkCount];
+            int[] chunkPage = new int[chunkCount];
+            long[] textOffset = new long[chunkCount];
+            int[] textLength = new int[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunkFile[i] = buffer.getInt();
+                chunkPage[i] = buffer.getInt();
+                textOffset[i] = buffer.getLong();
+                textLength[i] = buffer.getInt();
+            }
+            HnswIndex index = HnswIndex.readFrom(buffer);
+            long textBytes = buffer.getLong();
+            ByteBuffer texts = buffer.slice(buffer.position(), Math.toIntExact(textBytes));
+            return new ChunkIndexFile(path, List.copyOf(files), chunkFile, chunkPage, textOffset, textLength,
+                    index, texts);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt chunk index file " + path + ": " + e, e);
+        }
+    }
+
+    /**
+     * Writes an index file next to the target and moves it into place, so readers never
+     * see a partial file (an existing mapping of the old file stays valid).
+     */
+    public static void write(Path path, List<SourceFile> files, List<Chunk> chunks, HnswIndex index)
+            throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            List<byte[]> encoded = new ArrayList<>(chunks.size());
+            chunks.forEach(chunk -> encoded.add(chunk.text().getBytes(StandardCharsets.UTF_8)));
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                    1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(files.size());
+                for (SourceFile file : files) {
+                    writeString(out, file.path());
+                    writeString(out, file.hash());
+                    out.writeLong(file.size());
+                    out.writeLong(file.modified());
+                    out.writeInt(file.firstChunk());
+                    out.writeInt(file.chunkCount());
+                }
+                out.writeInt(chunks.size());
+                long offset = 0;
+                for (int i = 0; i < chunks.size(); i++) {
+                    out.writeInt(chunks.get(i).fileIndex());
+                    out.writeInt(chunks.get(i).page());
+                    out.writeLong(offset);
+                    out.writeInt(encoded.get(i).length);
+                    offset += encoded.get(i).length;
+                }
+                index.writeTo(out);
+                out.writeLong(offset);
+                for (byte[] text : encoded) {
+                    out.write(text);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public DocumentChunk chunk(int id) {
+        SourceFile file = files.get(chunkFile[id]);
+        String source = chunkPage[id] > 0 ? file.path() + " (page " + chunkPage[id] + ")" : file.path();
+        return new DocumentChunk(source, text(id));
+    }
+
+    public String text(int id) {
+        byte[] bytes = new byte[textLength[id]];
+        texts.get(Math.toIntExact(textOffset[id]), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The chunk as it would be written again (to carry it over into a new index file).
+     */
+    public Chunk record(int id, int newFileIndex) {
+        return new Chunk(newFileIndex, chunkPage[id], text(id));
+    }
+
+    public int chunkCount() {
+        return chunkFile.length;
+    }
+
+    public List<SourceFile> files() {
+        return files;
+    }
+
+    public HnswIndex index() {
+        return index;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * A chunk to be written: owning file (index into the file list), 1-based page (0 for
+     * plain text files) and text.
+     */
+    public record Chunk(int fileIndex, int page, String text) {
+    }
+}
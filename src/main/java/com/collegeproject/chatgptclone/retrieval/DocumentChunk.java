@@ -0,0 +1,10 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+/**
+ * A piece of a course document that can be retrieved as LLM context.
+ *
+ * @param source File the chunk was taken from.
+ * @param text   The chunk text.
+ */
+public record DocumentChunk(String source, String text) {
+}
@@ -0,0 +1,282 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import com.collegeproject.chatgptclone.service.ImageStore;
+import com.collegeproject.chatgptclone.service.LlmClient;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Builds the retrieval index from the course documents (PDF and text files in
+ * {@code retrieval.documents.dir}) and persists it as a {@link ChunkIndexFile}.
+ * Ingestion is incremental: a file whose size and modification time (or, failing that,
+ * content hash) match the previous index keeps its chunks and embeddings; only new or
+ * changed files are parsed, chunked and embedded. Hashing, PDF parsing and chunking run
+ * in parallel on a dedicated fork-join pool.
+ */
+@Service
+public class DocumentIngestionService {
+
+    private final LlmClient llmClient;
+    private final Path documentsDir;
+    private final Path indexFile;
+    private final TextChunker chunker;
+    private final int embedBatchSize;
+    private final int m;
+    private final int efConstruction;
+    private final ForkJoinPool pool;
+
+    public DocumentIngestionService(LlmClient llmClient,
+            @Value("${retrieval.documents.dir:llm-service/data}") Path documentsDir,
+            @Value("${retrieval.index.file:retrieval-index/chunks.idx}") Path indexFile,
+            @Value("${retrieval.chunk.size:1000}") int chunkSize,
+            @Value("${retrieval.chunk.overlap:200}") int chunkOverlap,
+            @Value("${retrieval.embed.batch-size:64}") int embedBatchSize,
+            @Value("${retrieval.ingest.parallelism:0}") int parallelism,
+            @Value("${retrieval.hnsw.m:16}") int m,
+            @Value("${retrieval.hnsw.ef-construction:200}") int efConstruction) {
+        this.llmClient = llmClient;
+        this.documentsDir = documentsDir;
+        this.indexFile = indexFile;
+        this.chunker = new TextChunker(chunkSize, chunkOverlap);
+        this.embedBatchSize = Math.max(1, embedBatchSize);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Maps the index written by the last ingestion, if there is one.
+     */
+    public Optional<ChunkIndexFile> openExisting() {
+        if (!Files.exists(indexFile)) {
+            return Optional.empty();
+        }
+        try {
+            long start = System.nanoTime();
+            ChunkIndexFile file = ChunkIndexFile.open(indexFile);
+            System.out.println("Mapped retrieval index " + indexFile + ": " + file.chunkCount() + " chunks in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            return Optional.of(file);
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable retrieval index: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Brings the index up to date with the documents directory.
+     *
+     * @param previous The index currently in use (its unchanged files are carried over), or null.
+     * @return The new index, or {@code previous} itself if nothing changed.
+     */
+    public synchronized Result ingest(ChunkIndexFile previous) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Integer> previousFiles = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.files().size(); i++) {
+                previousFiles.put(previous.files().get(i).path(), i);
+            }
+        }
+
+        List<Path> paths = listDocuments();
+        // Stat, hash and (for changed files only) parse + chunk, in parallel
+        List<ScannedFile> scanned = inPool(() -> paths.parallelStream()
+                .map(path -> scan(path, previous, previousFiles))
+                .toList());
+
+        int changedFiles = (int) scanned.stream().filter(ScannedFile::changed).count();
+        long keptFiles = scanned.size() - changedFiles;
+        int removedFiles = (int) (previousFiles.size() - keptFiles);
+        if (previous != null && changedFiles == 0 && removedFiles == 0) {
+            return new Result(previous, false, scanned.size(), 0, 0, 0, elapsedMillis(start));
+        }
+
+        // Embed only the new chunks
+        List<String> newTexts = new ArrayList<>();
+        scanned.stream().filter(ScannedFile::changed).forEach(file -> file.pages().forEach(p -> newTexts.add(p.text())));
+        float[][] newVectors = embed(newTexts);
+
+        // Assemble files, chunks and vectors: carried over or new, in directory order
+        int dimension = newVectors.length > 0 ? newVectors[0].length
+                : previous != null ? previous.index().dimension() : 1;
+        List<SourceFile> files = new ArrayList<>(scanned.size());
+        List<ChunkIndexFile.Chunk> chunks = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        int nextNew = 0;
+        for (ScannedFile file : scanned) {
+            int fileIndex = files.size();
+            int firstChunk = chunks.size();
+            if (file.changed()) {
+                for (PageText page : file.pages()) {
+                    chunks.add(new ChunkIndexFile.Chunk(fileIndex, page.page(), page.text()));
+                    vectors.add(newVectors[nextNew++]);
+                }
+            } else {
+                SourceFile old = file.previous();
+                for (int id = old.firstChunk(); id < old.firstChunk() + old.chunkCount(); id++) {
+                    chunks.add(previous.record(id, fileIndex));
+                    float[] vector = new float[dimension];
+                    previous.index().copyVector(id, vector);
+                    vectors.add(vector);
+                }
+            }
+            files.add(new SourceFile(file.path(), file.hash(), file.size(), file.modified(), firstChunk,
+                    chunks.size() - firstChunk));
+        }
+
+        HnswIndex index = new HnswIndex(dimension, vectors.size(), m, efConstruction);
+        vectors.forEach(index::add);
+        ChunkIndexFile.write(indexFile, files, chunks, index);
+        ChunkIndexFile written = ChunkIndexFile.open(indexFile);
+        Result result = new Result(written, true, files.size(), changedFiles, removedFiles, newTexts.size(),
+                elapsedMillis(start));
+        System.out.println("Document ingestion: " + result.describe());
+        return result;
+    }
+
+    private List<Path> listDocuments() throws IOException {
+        if (!Files.isDirectory(documentsDir)) {
+            return List.of();
+        }
+        try (Stream<Path> walk = Files.walk(documentsDir)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                        return name.endsWith(".pdf") || name.endsWith(".txt");
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private ScannedFile scan(Path path, ChunkIndexFile previous, Map<String, Integer> previousFiles) {
+        try {
+            String relative = documentsDir.relativize(path).toString().replace('\\', '/');
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            Integer oldIndex = previousFiles.get(relative);
+            SourceFile old = oldIndex != null ? previous.files().get(oldIndex) : null;
+            if (old != null && old.size() == size && old.modified() == modified) {
+                return new ScannedFile(relative, old.hash(), size, modified, old, null);
+            }
+            byte[] content = Files.readAllBytes(path);
+            String hash = ImageStore.sha256(content);
+            if (old != null && old.hash().equals(hash)) {
+                return new ScannedFile(relative, hash, size, modified, old, null); // Touched, not changed
+            }
+            return new ScannedFile(relative, hash, size, modified, null, parse(path, content));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path, e);
+        }
+    }
+
+    /**
+     * Extracts text per page (PDF) or as a whole (text file) and splits it into chunks.
+     */
+    private List<PageText> parse(Path path, byte[] content) throws IOException {
+        List<PageText> pages = new ArrayList<>();
+        if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+            try (PDDocument document = Loader.loadPDF(content)) {
+                PDFTextStripper stripper = new PDFTextStripper();
+                for (int page = 1; page <= document.getNumberOfPages(); page++) {
+                    stripper.setStartPage(page);
+                    stripper.setEndPage(page);
+                    int pageNumber = page;
+                    chunker.split(stripper.getText(document)).forEach(text -> pages.add(new PageText(pageNumber, text)));
+                }
+            }
+        } else {
+            chunker.split(new String(content, StandardCharsets.UTF_8)).forEach(text -> pages.add(new PageText(0, text)));
+        }
+        return pages;
+    }
+
+    private float[][] embed(List<String> texts) {
+        float[][] vectors = new float[texts.size()][];
+        for (int from = 0; from < texts.size(); from += embedBatchSize) {
+            int to = Math.min(from + embedBatchSize, texts.size());
+            float[][] batch = llmClient.embed(texts.subList(from, to)).join();
+            System.arraycopy(batch, 0, vectors, from, batch.length);
+        }
+        return vectors;
+    }
+
+    private <T> T inPool(Callable<T> task) throws IOException {
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ingestion interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Outcome of an ingestion run.
+     *
+     * @param index   The index to use from now on.
+     * @param changed Whether a new index file was written.
+     */
+    public record Result(ChunkIndexFile index, boolean changed, int files, int changedFiles, int removedFiles,
+            int embeddedChunks, long millis) {
+
+        public String describe() {
+            if (!changed) {
+                return "Documents unchanged (" + files + " files, " + index.chunkCount() + " chunks)";
+            }
+            return files + " files (" + changedFiles + " new/changed, " + removedFiles + " removed), "
+                    + index.chunkCount() + " chunks (" + embeddedChunks + " embedded) in " + millis + " ms";
+        }
+    }
+
+    private record PageText(int page, String text) {
+    }
+
+    /**
+     * A file in the documents directory: either unchanged ({@code previous} set) or
+     * changed/new ({@code pages} holds its chunks).
+     */
+    private record ScannedFile(String path, String hash, long size, long modified, SourceFile previous,
+            List<PageText> pages) {
+
+        boolean changed() {
+            return previous == null;
+        }
+    }
+}
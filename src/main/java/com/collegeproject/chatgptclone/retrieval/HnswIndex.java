@@ -0,0 +1,509 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * HNSW (Hierarchical Navigable Small World) approximate nearest-neighbour index over
+ * fixed-size embeddings, using cosine similarity.
+ * - Vectors are L2-normalized on insert and kept in one flat float[] (node i starts at
+ *   i * dimension), so similarity is a plain dot product over primitive data.
+ * - Capacity is fixed up front; a changed corpus gets a new index that replaces the old one.
+ * - Searches take no locks. Inserts are serialized with each other, and publish neighbour
+ *   lists copy-on-write through an AtomicReferenceArray, so a concurrent search always
+ *   sees either the old or the new list of a node, never a half-written one.
+ */
+public class HnswIndex {
+
+    static final int MAX_LEVELS = 16;
+
+    private final int dimension;
+    private final int capacity;
+    private final int m;        // neighbours per node on upper levels
+    private final int maxM0;    // neighbours per node on level 0
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    private final float[] vectors;
+    private final int[] levels;
+    // Neighbour list of (node, level) at node * MAX_LEVELS + level
+    private final AtomicReferenceArray<int[]> links;
+
+    private volatile int size;
+    private volatile EntryPoint entryPoint;
+    private final Object insertLock = new Object();
+
+    public HnswIndex(int dimension, int capacity, int m, int efConstruction) {
+        this(dimension, capacity, m, efConstruction, 42L);
+    }
+
+    public HnswIndex(int dimension, int capacity, int m, int efConstruction, long seed) {
+        if (dimension <= 0 || capacity < 0 || m < 2) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimension " + dimension
+                    + ", capacity " + capacity + ", m " + m);
+        }
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.vectors = new float[Math.multiplyExact(dimension, capacity)];
+        this.levels = new int[capacity];
+        this.links = new AtomicReferenceArray<>(Math.multiplyExact(capacity, MAX_LEVELS));
+    }
+
+    /**
+     * Adds a vector; nodes are numbered 0, 1, 2... in insertion order.
+     *
+     * @return The node id.
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + vector.length);
+        }
+        synchronized (insertLock) {
+            int node = size;
+            if (node >= capacity) {
+                throw new IllegalStateException("HNSW index is full (" + capacity + " nodes)");
+            }
+            System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+            normalize(vectors, node * dimension, dimension);
+            int level = randomLevel();
+            levels[node] = level;
+            for (int l = 0; l <= level; l++) {
+                links.set(node * MAX_LEVELS + l, new int[0]);
+            }
+
+            EntryPoint entry = entryPoint;
+            if (entry == null) {
+                size = node + 1;
+                entryPoint = new EntryPoint(node, level);
+                return node;
+            }
+
+            int offset = node * dimension;
+            int current = entry.node();
+            // Greedy descent through the levels above the new node's top level
+            for (int l = entry.level(); l > level; l--) {
+                current = greedyClosest(vectors, offset, current, l);
+            }
+            for (int l = Math.min(level, entry.level()); l >= 0; l--) {
+                ScoredHeap candidates = searchLayer(vectors, offset, current, efConstruction, l, null);
+                int[] neighbours = selectNeighbours(candidates, l == 0 ? maxM0 : m);
+                links.set(node * MAX_LEVELS + l, neighbours);
+                for (int neighbour : neighbours) {
+                    connect(neighbour, node, l);
+                }
+                current = candidates.best();
+            }
+            // Publish the node only once it is linked in
+            size = node + 1;
+            if (level > entry.level()) {
+                entryPoint = new EntryPoint(node, level);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Approximate k nearest neighbours of the query, best first.
+     *
+     * @param ef Size of the dynamic candidate list (recall/speed trade-off, at least k).
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + query.length);
+        }
+        EntryPoint entry = entryPoint;
+        if (entry == null || k <= 0) {
+            return List.of();
+        }
+        float[] q = Arrays.copyOf(query, dimension);
+        normalize(q, 0, dimension);
+
+        int current = entry.node();
+        for (int l = entry.level(); l > 0; l--) {
+            current = greedyClosest(q, 0, current, l);
+        }
+        ScoredHeap results = searchLayer(q, 0, current, Math.max(ef, k), 0, new BitSet(size));
+        int[] ids = results.idsBestFirst();
+        float[] scores = results.scoresBestFirst();
+        List<Hit> hits = new ArrayList<>(Math.min(k, ids.length));
+        for (int i = 0; i < ids.length && i < k; i++) {
+            hits.add(new Hit(ids[i], scores[i]));
+        }
+        return hits;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Copies node's (normalized) vector into {@code target}.
+     */
+    public void copyVector(int node, float[] target) {
+        System.arraycopy(vectors, node * dimension, target, 0, dimension);
+    }
+
+    /**
+     * Serializes parameters, vectors and graph, so the index can be restored without
+     * re-inserting every node. Must not run concurrently with {@link #add}.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        int count = size;
+        EntryPoint entry = entryPoint;
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(count);
+        out.writeInt(entry != null ? entry.node() : -1);
+        out.writeInt(entry != null ? entry.level() : -1);
+        for (int i = 0; i < count * dimension; i++) {
+            out.writeFloat(vectors[i]);
+        }
+        for (int node = 0; node < count; node++) {
+            out.writeInt(levels[node]);
+            for (int l = 0; l <= levels[node]; l++) {
+                int[] list = neighbours(node, l);
+                out.writeInt(list.length);
+                for (int neighbour : list) {
+                    out.writeInt(neighbour);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores an index written by {@link #writeTo}, reading from the buffer's position
+     * (typically a memory-mapped file) and leaving the position after the index.
+     */
+    static HnswIndex readFrom(ByteBuffer buffer) {
+        int dimension = buffer.getInt();
+        int m = buffer.getInt();
+        int efConstruction = buffer.getInt();
+        int count = buffer.getInt();
+        int entryNode = buffer.getInt();
+        int entryLevel = buffer.getInt();
+        HnswIndex index = new HnswIndex(dimension, count, m, efConstruction);
+        // Bulk copy of all vectors in one call
+        buffer.asFloatBuffer().get(index.vectors, 0, count * dimension);
+        buffer.position(buffer.position() + count * dimension * Float.BYTES);
+        for (int node = 0; node < count; node++) {
+            int level = buffer.getInt();
+            index.levels[node] = level;
+            for (int l = 0; l <= level; l++) {
+                int[] list = new int[buffer.getInt()];
+                buffer.asIntBuffer().get(list);
+                buffer.position(buffer.position() + list.length * Integer.BYTES);
+                index.links.set(node * MAX_LEVELS + l, list);
+            }
+        }
+        index.size = count;
+        index.entryPoint = entryNode >= 0 ? new EntryPoint(entryNode, entryLevel) : null;
+        return index;
+    }
+
+    /**
+     * Walks to the neighbour most similar to the query until no neighbour improves.
+     */
+    private int greedyClosest(float[] query, int queryOffset, int start, int level) {
+        int current = start;
+        float best = dot(query, queryOffset, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : neighbours(current, level)) {
+                float score = dot(query, queryOffset, neighbour);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search on one level, keeping the ef most similar nodes found.
+     */
+    private ScoredHeap searchLayer(float[] query, int queryOffset, int start, int ef, int level, BitSet visited) {
+        if (visited == null) {
+            visited = new BitSet(size + 1);
+        }
+        ScoredHeap candidates = new ScoredHeap(ef * 2, true);  // most similar on top
+        ScoredHeap results = new ScoredHeap(ef + 1, false);    // least similar on top
+        float startScore = dot(query, queryOffset, start);
+        visited.set(start);
+        candidates.push(start, startScore);
+        results.push(start, startScore);
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break; // Nothing left that can improve the result set
+            }
+            int candidate = candidates.pop();
+            for (int neighbour : neighbours(candidate, level)) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = dot(query, queryOffset, neighbour);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbour, score);
+                    results.push(neighbour, score);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * HNSW neighbour-selection heuristic: take candidates best first, skipping one that is
+     * closer to an already selected neighbour than to the new node. Keeps links spread out
+     * over clusters instead of all pointing into the nearest one.
+     */
+    private int[] selectNeighbours(ScoredHeap candidates, int maxNeighbours) {
+        int[] ids = candidates.idsBestFirst();
+        float[] scores = candidates.scoresBestFirst();
+        int[] selected = new int[Math.min(maxNeighbours, ids.length)];
+        int count = 0;
+        for (int i = 0; i < ids.length && count < selected.length; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (dot(vectors, ids[i] * dimension, selected[j]) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = ids[i];
+            }
+        }
+        // Fill up with the best skipped candidates so sparse regions stay connected
+        for (int i = 0; i < ids.length && count < selected.length; i++) {
+            if (!contains(selected, count, ids[i])) {
+                selected[count++] = ids[i];
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Adds a back-link, shrinking the node's list to its most similar neighbours when full.
+     */
+    private void connect(int node, int newNeighbour, int level) {
+        int maxNeighbours = level == 0 ? maxM0 : m;
+        int[] current = neighbours(node, level);
+        int[] updated;
+        if (current.length < maxNeighbours) {
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = newNeighbour;
+        } else {
+            ScoredHeap all = new ScoredHeap(current.length + 1, false);
+            int offset = node * dimension;
+            for (int neighbour : current) {
+                all.push(neighbour, dot(vectors, offset, neighbour));
+            }
+            all.push(newNeighbour, dot(vectors, offset, newNeighbour));
+            updated = selectNeighbours(all, maxNeighbours);
+        }
+        links.set(node * MAX_LEVELS + level, updated); // Copy-on-write: readers keep the old array
+    }
+
+    private int[] neighbours(int node, int level) {
+        int[] list = links.get(node * MAX_LEVELS + level);
+        return list != null ? list : new int[0];
+    }
+
+    private int randomLevel() {
+        double u = 1.0 - random.nextDouble(); // (0, 1]
+        return Math.min((int) (-Math.log(u) * levelMultiplier), MAX_LEVELS - 1);
+    }
+
+    private float dot(float[] query, int queryOffset, int node) {
+        int offset = node * dimension;
+        float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            sum0 += query[queryOffset + i] * vectors[offset + i];
+            sum1 += query[queryOffset + i + 1] * vectors[offset + i + 1];
+            sum2 += query[queryOffset + i + 2] * vectors[offset + i + 2];
+            sum3 += query[queryOffset + i + 3] * vectors[offset + i + 3];
+        }
+        for (; i < dimension; i++) {
+            sum0 += query[queryOffset + i] * vectors[offset + i];
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    private static void normalize(float[] data, int offset, int length) {
+        double norm = 0;
+        for (int i = 0; i < length; i++) {
+            norm += data[offset + i] * data[offset + i];
+        }
+        if (norm == 0) {
+            return;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < length; i++) {
+            data[offset + i] *= scale;
+        }
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A search result: node id and cosine similarity to the query.
+     */
+    public record Hit(int id, float score) {
+    }
+
+    private record EntryPoint(int node, int level) {
+    }
+
+    /**
+     * Binary heap of (node, score) pairs in parallel primitive arrays; no boxing per visit.
+     */
+    static final class ScoredHeap {
+        private final boolean maxOnTop;
+        private int[] ids;
+        private float[] scores;
+        private int size;
+
+        ScoredHeap(int initialCapacity, boolean maxOnTop) {
+            this.maxOnTop = maxOnTop;
+            this.ids = new int[Math.max(4, initialCapacity)];
+            this.scores = new float[ids.length];
+        }
+
+        void push(int id, float score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!above(score, scores[parent])) {
+                    break;
+                }
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = ids[0];
+            int lastId = ids[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && above(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!above(scores[child], lastScore)) {
+                    break;
+                }
+                ids[i] = ids[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            ids[i] = lastId;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int best() {
+            int best = 0;
+            for (int i = 1; i < size; i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            return ids[best];
+        }
+
+        int[] idsBestFirst() {
+            int[] order = order();
+            int[] sorted = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = ids[order[i]];
+            }
+            return sorted;
+        }
+
+        float[] scoresBestFirst() {
+            int[] order = order();
+            float[] sorted = new float[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = scores[order[i]];
+            }
+            return sorted;
+        }
+
+        /**
+         * Heap positions from most to least similar (heap-sorts a copy of the positions).
+         */
+        private int[] order() {
+            ScoredHeap copy = new ScoredHeap(size, true);
+            for (int i = 0; i < size; i++) {
+                copy.push(i, scores[i]);
+            }
+            int[] order = new int[size];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = copy.pop();
+            }
+            return order;
+        }
+
+        private boolean above(float a, float b) {
+            return maxOnTop ? a > b : a < b;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import com.collegeproject.chatgptclone.service.LlmClient;
+import com.collegeproject.chatgptclone.service.LlmResponseCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Document retrieval (RAG) inside the Spring app.
+ * The index (chunks + {@link HnswIndex}) comes from {@link DocumentIngestionService}; each
+ * question is embedded once (POST /embed to the Python service, cached) and searched here,
+ * and the resulting context is sent along with /predict so the Python side only builds the prompt.
+ * - Startup maps the index file written by the last ingestion, then brings it up to date
+ *   in the background (only new or changed documents are embedded).
+ * - Until an index exists (or if the Python service is down) no context is attached and
+ *   Python falls back to its own FAISS search.
+ * - Hybrid search: a {@link Bm25Index} over the same chunks catches exact terms that
+ *   embeddings miss; both result lists are merged with reciprocal rank fusion. If the
+ *   question can't be embedded, the lexical results are used alone.
+ * - A reload swaps in the new index; searches in flight keep using the old one.
+ */
+@Service
+public class RetrievalService {
+
+    private final LlmClient llmClient;
+    private final DocumentIngestionService ingestionService;
+    private final LlmResponseCache responseCache;
+    private final AsyncTaskExecutor taskExecutor;
+    private final boolean enabled;
+    private final int topK;
+    private final int efSearch;
+    private final boolean hybrid;
+    private final int candidates;
+    private final int rrfK;
+    private final float bm25K1;
+    private final float bm25B;
+    private final Duration embedTimeout;
+    private final Cache<String, float[]> queryEmbeddings;
+
+    private volatile Corpus corpus; // null until an index has been mapped or built
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong lexicalNanos = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public RetrievalService(LlmClient llmClient, DocumentIngestionService ingestionService,
+            LlmResponseCache responseCache,
+            @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor,
+            @Value("${retrieval.enabled:true}") boolean enabled,
+            @Value("${retrieval.top-k:3}") int topK,
+            @Value("${retrieval.hnsw.ef-search:64}") int efSearch,
+            @Value("${retrieval.hybrid.enabled:true}") boolean hybrid,
+            @Value("${retrieval.hybrid.candidates:10}") int candidates,
+            @Value("${retrieval.hybrid.rrf-k:60}") int rrfK,
+            @Value("${retrieval.bm25.k1:1.2}") float bm25K1,
+            @Value("${retrieval.bm25.b:0.75}") float bm25B,
+            @Value("${retrieval.embed-timeout:10s}") Duration embedTimeout,
+            @Value("${retrieval.query-cache.max-entries:10000}") long queryCacheSize) {
+        this.llmClient = llmClient;
+        this.ingestionService = ingestionService;
+        this.responseCache = responseCache;
+        this.taskExecutor = taskExecutor;
+        this.enabled = enabled;
+        this.topK = topK;
+        this.efSearch = efSearch;
+        this.hybrid = hybrid;
+        this.candidates = Math.max(candidates, topK);
+        this.rrfK = rrfK;
+        this.bm25K1 = bm25K1;
+        this.bm25B = bm25B;
+        this.embedTimeout = embedTimeout;
+        this.queryEmbeddings = Caffeine.newBuilder().maximumSize(queryCacheSize).build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        // Map the last index, then pick up documents changed while the app was down; none of it delays startup
+        CompletableFuture.runAsync(() -> ingestionService.openExisting().ifPresent(this::use), taskExecutor)
+                .thenCompose(ignored -> reload())
+                .exceptionally(e -> {
+                    System.out.println("Document ingestion failed: " + e.getMessage()
+                            + (corpus == null ? " (Python RAG will be used)" : " (keeping the previous index)"));
+                    return null;
+                });
+    }
+
+    /**
+     * Re-ingests the documents directory in the background and swaps in the result.
+     * On failure the previous index stays in use.
+     *
+     * @return A short description of what changed.
+     */
+    public CompletableFuture<String> reload() {
+        if (!enabled) {
+            return CompletableFuture.completedFuture("Retrieval is disabled");
+        }
+        return CompletableFuture.supplyAsync(this::reloadNow, taskExecutor);
+    }
+
+    private synchronized String reloadNow() {
+        try {
+            Corpus current = corpus;
+            DocumentIngestionService.Result result = ingestionService.ingest(current != null ? current.file() : null);
+            if (result.changed()) {
+                use(result.index());
+                responseCache.onCorpusReloaded(); // Cached answers may rely on the old documents
+            }
+            return result.describe();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes an index file the active corpus, building its lexical index alongside.
+     */
+    private void use(ChunkIndexFile file) {
+        Bm25Index lexical = hybrid ? Bm25Index.build(file.chunkCount(), file::text, bm25K1, bm25B) : null;
+        corpus = new Corpus(file, lexical);
+    }
+
+    /**
+     * The document context for a question: the top-k chunks joined by blank lines.
+     *
+     * @return Empty if retrieval is not available, in which case the Python service should
+     *         retrieve on its own; an empty string if nothing relevant exists.
+     */
+    public Optional<String> retrieveContext(String query) {
+        Corpus current = corpus;
+        if (!enabled || current == null || query == null || query.isBlank()) {
+            return Optional.empty();
+        }
+        if (current.file().chunkCount() == 0) {
+            return Optional.of("");
+        }
+        List<Integer> lexicalIds = List.of();
+        if (current.lexical() != null) {
+            long start = System.nanoTime();
+            lexicalIds = current.lexical().search(query, candidates).stream().map(Bm25Index.Hit::id).toList();
+            lexicalNanos.addAndGet(System.nanoTime() - start);
+        }
+        List<Integer> vectorIds;
+        try {
+            float[] vector = embedQuery(query);
+            long start = System.nanoTime();
+            vectorIds = current.file().index().search(vector, candidates, efSearch).stream()
+                    .map(HnswIndex.Hit::id).toList();
+            searchNanos.addAndGet(System.nanoTime() - start);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            if (current.lexical() == null) {
+                System.out.println("Retrieval failed, leaving it to the Python service: " + e.getMessage());
+                return Optional.empty();
+            }
+            System.out.println("Vector search failed, using keyword matches only: " + e.getMessage());
+            vectorIds = List.of();
+        }
+        searches.incrementAndGet();
+        return Optional.of(fuse(vectorIds, lexicalIds).stream()
+                .limit(topK)
+                .map(id -> current.file().text(id))
+                .collect(Collectors.joining("\n\n")));
+    }
+
+    /**
+     * Reciprocal rank fusion: each list adds 1 / (rrfK + rank) to a chunk's score, so chunks
+     * ranked well by both searches come first, without comparing BM25 and cosine scores.
+     */
+    private List<Integer> fuse(List<Integer> vectorIds, List<Integer> lexicalIds) {
+        if (lexicalIds.isEmpty()) {
+            return vectorIds;
+        }
+        Map<Integer, Double> scores = new LinkedHashMap<>();
+        for (int rank = 0; rank < vectorIds.size(); rank++) {
+            scores.merge(vectorIds.get(rank), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        for (int rank = 0; rank < lexicalIds.size(); rank++) {
+            scores.merge(lexicalIds.get(rank), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private float[] embedQuery(String query) throws Exception {
+        float[] cached = queryEmbeddings.getIfPresent(query);
+        if (cached != null) {
+            return cached;
+        }
+        float[] vector = llmClient.embed(List.of(query)).get(embedTimeout.toMillis(), TimeUnit.MILLISECONDS)[0];
+        queryEmbeddings.put(query, vector);
+        return vector;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return corpus != null;
+    }
+
+    public Map<String, Object> getStats() {
+        Corpus current = corpus;
+        long searchCount = searches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", current != null);
+        stats.put("files", current != null ? current.file().files().size() : 0);
+        stats.put("chunks", current != null ? current.file().chunkCount() : 0);
+        stats.put("dimension", current != null ? current.file().index().dimension() : 0);
+        stats.put("hybrid", current != null && current.lexical() != null);
+        stats.put("terms", current != null && current.lexical() != null ? current.lexical().termCount() : 0);
+        stats.put("searches", searchCount);
+        stats.put("avgSearchMicros", searchCount == 0 ? 0 : searchNanos.get() / searchCount / 1000);
+        stats.put("avgLexicalSearchMicros", searchCount == 0 ? 0 : lexicalNanos.get() / searchCount / 1000);
+        stats.put("failures", failures.get());
+        stats.put("cachedQueryEmbeddings", queryEmbeddings.estimatedSize());
+        return stats;
+    }
+
+    /**
+     * The index file and the lexical index over its chunks, swapped as one unit.
+     */
+    private record Corpus(ChunkIndexFile file, Bm25Index lexical) {
+    }
+}
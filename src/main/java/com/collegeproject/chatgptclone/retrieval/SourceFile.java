@@ -0,0 +1,13 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+/**
+ * A document that was ingested into the index, as recorded in the index file.
+ * Used to tell unchanged files (same size and modification time, or same hash) from
+ * changed ones on the next ingestion.
+ *
+ * @param path       Path relative to the documents directory.
+ * @param hash       SHA-256 of the file content.
+ * @param firstChunk Id of the file's first chunk; its chunks are consecutive.
+ */
+public record SourceFile(String path, String hash, long size, long modified, int firstChunk, int chunkCount) {
+}
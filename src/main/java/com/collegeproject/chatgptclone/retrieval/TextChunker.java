@@ -0,0 +1,74 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into overlapping chunks of at most {@code chunkSize} characters, the same
+ * way the Python RagEngine did (RecursiveCharacterTextSplitter, 1000/200): a chunk ends at
+ * the last paragraph break, else line break, else space inside the window, and the next
+ * chunk starts {@code overlap} characters before that end.
+ */
+public class TextChunker {
+
+    private static final String[] SEPARATORS = {"\n\n", "\n", " "};
+
+    private final int chunkSize;
+    private final int overlap;
+
+    public TextChunker(int chunkSize, int overlap) {
+        if (chunkSize <= 0 || overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("Invalid chunking: size " + chunkSize + ", overlap " + overlap);
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+    }
+
+    public List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        int length = text.length();
+        int start = skipWhitespace(text, 0);
+        while (start < length) {
+            int end = Math.min(start + chunkSize, length);
+            if (end < length) {
+                end = breakPoint(text, start, end);
+            }
+            String chunk = text.substring(start, end).strip();
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+            if (end >= length) {
+                break;
+            }
+            // Step back by the overlap, to the start of a word, but always make progress
+            int next = Math.max(end - overlap, start + 1);
+            while (next > start + 1 && next < end && !Character.isWhitespace(text.charAt(next - 1))) {
+                next++;
+            }
+            start = skipWhitespace(text, next);
+        }
+        return chunks;
+    }
+
+    /**
+     * The last separator in the second half of the window, so chunks don't become tiny.
+     */
+    private int breakPoint(String text, int start, int end) {
+        int earliest = start + chunkSize / 2;
+        for (String separator : SEPARATORS) {
+            int index = text.lastIndexOf(separator, end - separator.length());
+            if (index >= earliest) {
+                return index + separator.length();
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,19 @@
+package com.collegeproject.chatgptclone.service;
+
+/**
+ * Thrown by {@link LlmAdmissionScheduler} when the LLM queue is full.
+ * Controllers turn it into HTTP 429 with a Retry-After header.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(long retryAfterSeconds, String message) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,69 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.config.JwtConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Issues bearer tokens: checks the password once (same provider, user cache and hashing
+ * pool as form login) and signs a JWT with the username and roles, valid for {@code auth.jwt.ttl}.
+ */
+@Service
+public class AuthTokenService {
+
+    private final AuthenticationManager authenticationManager;
+    private final JwtEncoder jwtEncoder;
+    private final Duration ttl;
+    private final String issuer;
+
+    public AuthTokenService(AuthenticationManager authenticationManager, JwtEncoder jwtEncoder,
+            @Value("${auth.jwt.ttl:8h}") Duration ttl,
+            @Value("${auth.jwt.issuer:chatsphere}") String issuer) {
+        this.authenticationManager = authenticationManager;
+        this.jwtEncoder = jwtEncoder;
+        this.ttl = ttl;
+        this.issuer = issuer;
+    }
+
+    /**
+     * @return The token response ("token", "tokenType", "expiresIn" in seconds).
+     * @throws AuthenticationException if the credentials are wrong.
+     */
+    public Map<String, Object> issueToken(String username, String password) throws AuthenticationException {
+        Authentication authentication = authenticationManager.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(username, password));
+        Instant now = Instant.now();
+        List<String> roles = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer(issuer)
+                .subject(authentication.getName())
+                .issuedAt(now)
+                .expiresAt(now.plus(ttl))
+                .claim(JwtConfig.ROLES_CLAIM, roles)
+                .build();
+        String token = jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims))
+                .getTokenValue();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token", token);
+        response.put("tokenType", "Bearer");
+        response.put("expiresIn", ttl.toSeconds());
+        return response;
+    }
+}
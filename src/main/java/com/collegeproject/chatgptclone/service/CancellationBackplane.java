@@ -0,0 +1,55 @@
+package com.collegeproject.chatgptclone.service;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Shares Stop-button cancels and running-request ownership between the app instances behind
+ * a load balancer, so a cancel reaches its request whichever node runs it.
+ * Selected with {@code chat.cluster.backplane}: {@code memory} (single node, the default)
+ * or {@code mongo}, at runtime by {@code CancellationBackplaneConfig}. Nodes are identified by the
+ * node id of their CancellationRegistry.
+ * Requests are identified by their {@link RequestKey}: request ids are chosen by the client,
+ * so they are only unique per user.
+ */
+public interface CancellationBackplane extends AutoCloseable {
+
+    /**
+     * Delivers the cancels other nodes publish to {@code listener} (never the node's own).
+     * The listener runs on the backplane's thread and must not block.
+     */
+    void subscribe(String nodeId, Consumer<RequestKey> listener);
+
+    /**
+     * Tells every other node to cancel {@code request}.
+     */
+    void publish(String nodeId, RequestKey request);
+
+    /**
+     * Records that {@code nodeId} is running {@code request}.
+     */
+    void claim(String nodeId, RequestKey request);
+
+    /**
+     * Removes the claim, if {@code nodeId} still holds it.
+     */
+    void release(String nodeId, RequestKey request);
+
+    /**
+     * @return The node running {@code request}, if any node has claimed it.
+     */
+    Optional<String> findOwner(RequestKey request);
+
+    /**
+     * Stops whatever the backplane runs in the background (called when the context closes).
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * A client's request id together with the user who sent it.
+     */
+    record RequestKey(String userId, String requestId) {
+    }
+}
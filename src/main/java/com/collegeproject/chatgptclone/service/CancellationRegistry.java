@@ -0,0 +1,262 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.service.CancellationBackplane.RequestKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks chat requests that are currently running so the Stop button can abort them.
+ * - Running requests register an {@link InFlightRequest}; cancelling it runs its abort
+ *   actions (leave the LLM queue, cancel the HTTP call to the Python service).
+ * - A cancel that arrives before its request has started is kept as a "pending cancellation"
+ *   so the request stops as soon as it registers. Pending cancellations expire after
+ *   {@code chat.cancellation.ttl} and are capped at {@code chat.cancellation.max-pending},
+ *   so ids of requests that never arrive don't pile up.
+ * - With several instances, the Stop button's cancel may land on a node that isn't running
+ *   the request: it is then published on the {@link CancellationBackplane}, and every other
+ *   node aborts the request (or keeps it as a pending cancellation). Requests with a client
+ *   id are claimed on the backplane while they run, so a cancel can tell whether some node
+ *   had the request.
+ * Request ids come from the client, so everything is keyed by (user, request id): a user can
+ * only cancel their own requests, and two users picking the same id don't collide.
+ */
+@Component
+public class CancellationRegistry {
+
+    private final ConcurrentHashMap<RequestKey, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+
+    // request -> time the cancel arrived (System.nanoTime). Insertion order == age, so the
+    // oldest entries are always at the head. Guarded by itself.
+    private final LinkedHashMap<RequestKey, Long> pendingCancellations;
+    private final long ttlNanos;
+    private final CancellationBackplane backplane;
+    private final String nodeId;
+
+    private final AtomicLong publishedCancels = new AtomicLong();
+    private final AtomicLong receivedCancels = new AtomicLong();
+
+    public CancellationRegistry(@Value("${chat.cancellation.ttl:10m}") Duration ttl,
+            @Value("${chat.cancellation.max-pending:10000}") int maxPending,
+            CancellationBackplane backplane,
+            @Value("${chat.cluster.node-id:}") String nodeId) {
+        this.ttlNanos = ttl.toNanos();
+        this.backplane = backplane;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : defaultNodeId();
+        this.pendingCancellations = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RequestKey, Long> eldest) {
+                return size() > maxPending;
+            }
+        };
+        backplane.subscribe(this.nodeId, this::receiveCancel);
+    }
+
+    private static String defaultNodeId() {
+        String host = System.getenv("HOSTNAME");
+        return (host != null ? host : "node") + "-" + ProcessHandle.current().pid() + "-"
+                + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Registers a request that is about to run. If a cancel for this id already arrived,
+     * the returned request is already cancelled. Close it when the request finishes.
+     *
+     * @param userId    The user sending the request.
+     * @param requestId The client's request id, or null if the client can't cancel it.
+     */
+    public InFlightRequest register(String userId, String requestId) {
+        RequestKey key = new RequestKey(userId, requestId != null ? requestId : "internal-" + UUID.randomUUID());
+        InFlightRequest request = new InFlightRequest(key, requestId != null);
+        inFlight.put(key, request);
+        if (request.claimed) {
+            backplane.claim(nodeId, key);
+        }
+        if (consumePendingCancellation(key)) {
+            request.cancel();
+        }
+        return request;
+    }
+
+    /**
+     * Cancels a running request, or remembers the cancel until the request shows up.
+     * If the request isn't running on this node, the cancel is passed on to the others.
+     *
+     * @param userId The user asking; only their own requests are cancelled.
+     * @return true if a running request was found and aborted (here), or is being run by another node.
+     */
+    public boolean cancel(String userId, String requestId) {
+        RequestKey key = new RequestKey(userId, requestId);
+        if (cancelLocally(key)) {
+            return true;
+        }
+        publishedCancels.incrementAndGet();
+        backplane.publish(nodeId, key);
+        return backplane.findOwner(key).filter(owner -> !owner.equals(nodeId)).isPresent();
+    }
+
+    /**
+     * A cancel published by another node.
+     */
+    private void receiveCancel(RequestKey key) {
+        receivedCancels.incrementAndGet();
+        cancelLocally(key);
+    }
+
+    private boolean cancelLocally(RequestKey key) {
+        InFlightRequest request = inFlight.get(key);
+        if (request != null) {
+            request.cancel();
+            return true;
+        }
+        addPendingCancellation(key);
+        // The request may have registered between the lookup and the insert above
+        request = inFlight.get(key);
+        if (request != null && consumePendingCancellation(key)) {
+            request.cancel();
+            return true;
+        }
+        return false;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Cancels passed on to other nodes.
+     */
+    public long getPublishedCancelCount() {
+        return publishedCancels.get();
+    }
+
+    /**
+     * Cancels received from other nodes.
+     */
+    public long getReceivedCancelCount() {
+        return receivedCancels.get();
+    }
+
+    public int getPendingCancellationCount() {
+        synchronized (pendingCancellations) {
+            evictExpired(System.nanoTime());
+            return pendingCancellations.size();
+        }
+    }
+
+    private void addPendingCancellation(RequestKey key) {
+        synchronized (pendingCancellations) {
+            long now = System.nanoTime();
+            evictExpired(now);
+            pendingCancellations.remove(key); // re-insert at the tail with a fresh time
+            pendingCancellations.put(key, now);
+        }
+    }
+
+    private boolean consumePendingCancellation(RequestKey key) {
+        synchronized (pendingCancellations) {
+            evictExpired(System.nanoTime());
+            return pendingCancellations.remove(key) != null;
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Long> it = pendingCancellations.values().iterator();
+        while (it.hasNext() && now - it.next() > ttlNanos) {
+            it.remove();
+        }
+    }
+
+    /**
+     * A running chat request. Stages that can be aborted (queue wait, HTTP call, token
+     * stream) register an abort action with {@link #onCancel}.
+     */
+    public final class InFlightRequest implements CancellationSignal, AutoCloseable {
+        private final RequestKey key;
+        private final boolean claimed; // on the backplane
+        private final List<Runnable> cancelActions = new ArrayList<>(); // guarded by this
+        private volatile boolean cancelled;
+
+        private InFlightRequest(RequestKey key, boolean claimed) {
+            this.key = key;
+            this.claimed = claimed;
+        }
+
+        @Override
+        public String getRequestId() {
+            return key.requestId();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Registers an action that aborts the current stage. Runs it right away if the
+         * request has already been cancelled.
+         */
+        @Override
+        public void onCancel(Runnable action) {
+            synchronized (this) {
+                if (!cancelled) {
+                    cancelActions.add(action);
+                    return;
+                }
+            }
+            runQuietly(action);
+        }
+
+        /**
+         * Unregisters an action (e.g. when another owner takes over the stage it aborts).
+         *
+         * @return false if it was not registered, or has already run.
+         */
+        public synchronized boolean removeOnCancel(Runnable action) {
+            return cancelActions.remove(action);
+        }
+
+        void cancel() {
+            List<Runnable> actions;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                actions = new ArrayList<>(cancelActions);
+                cancelActions.clear();
+            }
+            System.out.println("Aborting in-flight request: " + key.requestId() + " of " + key.userId());
+            actions.forEach(InFlightRequest::runQuietly);
+        }
+
+        @Override
+        public void close() {
+            if (inFlight.remove(key, this) && claimed) {
+                backplane.release(nodeId, key);
+            }
+        }
+
+        private static void runQuietly(Runnable action) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.out.println("Cancel action failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.collegeproject.chatgptclone.service;
+
+/**
+ * What an LLM call needs to know about cancellation: whether to stop, and where to register
+ * the actions that abort it. Implemented by a single request
+ * ({@link CancellationRegistry.InFlightRequest}) and by a call shared by several identical
+ * requests ({@link LlmRequestCoalescer}), which is only cancelled once all of them are.
+ */
+public interface CancellationSignal {
+
+    String getRequestId();
+
+    boolean isCancelled();
+
+    /**
+     * Registers an action that aborts the current stage; runs it right away if already cancelled.
+     */
+    void onCancel(Runnable action);
+}
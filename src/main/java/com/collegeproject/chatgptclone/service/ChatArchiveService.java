@@ -0,0 +1,393 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatCursor;
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.model.ChatMessageBucket;
+import com.collegeproject.chatgptclone.repository.ChatArchiveRepository;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold tier of the chat history.
+ * A background job moves messages older than {@code chat.archive.after} out of
+ * chat_messages into {@link ChatMessageBucket}s: per user and calendar month (only whole
+ * months, so a bucket never gets new messages), at most {@code max-bucket-messages} and about
+ * {@code max-bucket-size} of uncompressed JSON each (legacy inline images are large and hardly
+ * compress, and a bucket must stay under MongoDB's 16 MB document limit), gzip-compressed. The hot collection (and its indexes) then only grows with recent traffic.
+ * - Each bucket is written before its messages are deleted; after a crash in between, the
+ *   next run rewrites the same bucket (same id) and readers skip the duplicates.
+ * - The read methods give ChatService the archived part of a history; archived messages
+ *   are always older than {@link #horizon()}, so newer cursors never touch the archive.
+ */
+@Service
+public class ChatArchiveService {
+
+    private static final Comparator<ChatMessage> HISTORY_ORDER = Comparator.comparing(ChatCursor::of);
+
+    private final ChatRepository chatRepository;
+    private final ChatArchiveRepository archiveRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final boolean enabled;
+    private final Duration archiveAfter;
+    private final Duration interval;
+    private final int maxBucketMessages;
+    private final long maxBucketBytes;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong archivedMessages = new AtomicLong();
+    private final AtomicLong writtenBuckets = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private volatile LocalDateTime lastRun;
+
+    public ChatArchiveService(ChatRepository chatRepository, ChatArchiveRepository archiveRepository,
+            MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+            @Value("${chat.archive.enabled:true}") boolean enabled,
+            @Value("${chat.archive.after:90d}") Duration archiveAfter,
+            @Value("${chat.archive.interval:6h}") Duration interval,
+            @Value("${chat.archive.max-bucket-messages:500}") int maxBucketMessages,
+            @Value("${chat.archive.max-bucket-size:4MB}") DataSize maxBucketSize) {
+        this.chatRepository = chatRepository;
+        this.archiveRepository = archiveRepository;
+        this.mongoTemplate = mongoTemplate;
+        TypeReference<List<ChatMessage>> listType = new TypeReference<>() {
+        };
+        this.writer = objectMapper.writerFor(listType);
+        this.reader = objectMapper.readerFor(listType);
+        this.enabled = enabled;
+        this.archiveAfter = archiveAfter;
+        this.interval = interval;
+        this.maxBucketMessages = Math.max(1, maxBucketMessages);
+        this.maxBucketBytes = maxBucketSize.toBytes();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleCompaction() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // First run a minute after startup, away from the startup work
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                System.out.println("Chat archive compaction failed: " + e.getMessage());
+            }
+        }, 60_000, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Archived messages are all older than this: the start of the month {@code after} ago.
+     */
+    public LocalDateTime horizon() {
+        return YearMonth.from(LocalDateTime.now().minus(archiveAfter)).atDay(1).atStartOfDay();
+    }
+
+    /**
+     * Moves every message older than {@link #horizon()} into buckets.
+     *
+     * @return The number of messages archived.
+     */
+    public synchronized long compact() {
+        LocalDateTime cutoff = horizon();
+        long archived = 0;
+        List<String> userIds = mongoTemplate.findDistinct(new Query(Criteria.where("timestamp").lt(cutoff)),
+                "userId", ChatMessage.class, String.class);
+        for (String userId : userIds) {
+            try {
+                archived += compactUser(userId, cutoff);
+            } catch (RuntimeException e) {
+                // What was archived so far stays archived (always the oldest messages); retried next run
+                System.out.println("Chat archive compaction failed for user " + userId + ": " + e.getMessage());
+            }
+        }
+        runs.incrementAndGet();
+        lastRun = LocalDateTime.now();
+        if (archived > 0) {
+            System.out.println("Archived " + archived + " chat messages of " + userIds.size()
+                    + " user(s) older than " + cutoff);
+        }
+        return archived;
+    }
+
+    private long compactUser(String userId, LocalDateTime cutoff) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("timestamp").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp", "_id"));
+        long archived = 0;
+        List<ChatMessage> run = new ArrayList<>();
+        YearMonth runMonth = null;
+        long runBytes = 0;
+        try (Stream<ChatMessage> messages = mongoTemplate.stream(query, ChatMessage.class)) {
+            for (ChatMessage message : (Iterable<ChatMessage>) messages::iterator) {
+                YearMonth month = YearMonth.from(message.getTimestamp());
+                long bytes = estimateSize(message);
+                if (!run.isEmpty() && (!month.equals(runMonth) || run.size() >= maxBucketMessages
+                        || runBytes + bytes > maxBucketBytes)) {
+                    archived += archive(userId, runMonth, run);
+                    run = new ArrayList<>();
+                    runBytes = 0;
+                }
+                runMonth = month;
+                run.add(message);
+                runBytes += bytes;
+            }
+        }
+        if (!run.isEmpty()) {
+            archived += archive(userId, runMonth, run);
+        }
+        return archived;
+    }
+
+    private int archive(String userId, YearMonth month, List<ChatMessage> messages) {
+        ChatMessageBucket bucket = toBucket(userId, month, messages);
+        archiveRepository.save(bucket);
+        chatRepository.deleteAllById(bucket.getMessageIds());
+
+        archivedMessages.addAndGet(messages.size());
+        writtenBuckets.incrementAndGet();
+        rawBytes.addAndGet(bucket.getRawSize());
+        compressedBytes.addAndGet(bucket.getMessages().length);
+        return messages.size();
+    }
+
+    /**
+     * Upper bound of a message's size in the bucket's JSON (UTF-8 text, Base64 image, fields).
+     */
+    static long estimateSize(ChatMessage message) {
+        long size = 256;
+        if (message.getMessage() != null) {
+            size += 3L * message.getMessage().length();
+        }
+        if (message.getImageBase64() != null) {
+            size += message.getImageBase64().length();
+        }
+        return size;
+    }
+
+    /**
+     * Packs a run of one user's messages (oldest first) into a bucket.
+     */
+    ChatMessageBucket toBucket(String userId, YearMonth month, List<ChatMessage> messages) {
+        ChatMessage first = messages.get(0);
+        ChatMessage last = messages.get(messages.size() - 1);
+        byte[] json = encode(messages);
+        byte[] compressed = gzip(json);
+
+        ChatMessageBucket bucket = new ChatMessageBucket();
+        bucket.setId(userId + ":" + first.getId());
+        bucket.setUserId(userId);
+        bucket.setMonth(month.toString());
+        bucket.setFirstTimestamp(first.getTimestamp());
+        bucket.setFirstId(first.getId());
+        bucket.setLastTimestamp(last.getTimestamp());
+        bucket.setLastId(last.getId());
+        bucket.setCount(messages.size());
+        bucket.setMessageIds(messages.stream().map(ChatMessage::getId).toList());
+        bucket.setImageIds(messages.stream().map(ChatMessage::getImageId).filter(Objects::nonNull).distinct().toList());
+        bucket.setRawSize(json.length);
+        bucket.setMessages(compressed);
+        return bucket;
+    }
+
+    /**
+     * All of a user's archived messages, oldest first.
+     */
+    public List<ChatMessage> findAll(String userId) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (ChatMessageBucket summary : summaries(userId, Sort.Direction.ASC)) {
+            messages.addAll(load(summary));
+        }
+        messages.sort(HISTORY_ORDER); // Buckets only overlap after an interrupted run
+        return messages;
+    }
+
+    /**
+     * All of a user's archived messages, oldest first, decompressing one bucket at a time as
+     * the stream is consumed (for exports, where {@link #findAll} would hold them all).
+     */
+    public Stream<ChatMessage> streamAll(String userId) {
+        return summaries(userId, Sort.Direction.ASC).stream()
+                .flatMap(summary -> load(summary).stream().sorted(HISTORY_ORDER));
+    }
+
+    /**
+     * Up to {@code limit} archived messages older than {@code before} (all if null), newest first.
+     */
+    public List<ChatMessage> findBefore(String userId, ChatCursor before, int limit) {
+        List<ChatMessage> newestFirst = new ArrayList<>();
+        for (ChatMessageBucket summary : summaries(userId, Sort.Direction.DESC)) {
+            if (before != null && summary.firstCursor().compareTo(before) >= 0) {
+                continue;
+            }
+            if (newestFirst.size() >= limit
+                    && summary.lastCursor().compareTo(ChatCursor.of(newestFirst.get(limit - 1))) < 0) {
+                break; // This bucket and all further ones are older than the page
+            }
+            for (ChatMessage message : load(summary)) {
+                if (before == null || ChatCursor.of(message).compareTo(before) < 0) {
+                    newestFirst.add(message);
+                }
+            }
+            newestFirst.sort(HISTORY_ORDER.reversed());
+        }
+        return newestFirst.subList(0, Math.min(limit, newestFirst.size()));
+    }
+
+    /**
+     * Up to {@code limit} archived messages newer than {@code after}, oldest first.
+     */
+    public List<ChatMessage> findAfter(String userId, ChatCursor after, int limit) {
+        if (after.timestamp().isAfter(horizon())) {
+            return List.of();
+        }
+        List<ChatMessage> oldestFirst = new ArrayList<>();
+        for (ChatMessageBucket summary : summaries(userId, Sort.Direction.ASC)) {
+            if (summary.lastCursor().compareTo(after) <= 0) {
+                continue;
+            }
+            if (oldestFirst.size() >= limit
+                    && summary.firstCursor().compareTo(ChatCursor.of(oldestFirst.get(limit - 1))) > 0) {
+                break;
+            }
+            for (ChatMessage message : load(summary)) {
+                if (ChatCursor.of(message).compareTo(after) > 0) {
+                    oldestFirst.add(message);
+                }
+            }
+            oldestFirst.sort(HISTORY_ORDER);
+        }
+        return oldestFirst.subList(0, Math.min(limit, oldestFirst.size()));
+    }
+
+    /**
+     * Position of the user's newest archived message.
+     */
+    public Optional<ChatCursor> findLatestCursor(String userId) {
+        return summaries(userId, Sort.Direction.DESC).stream()
+                .map(ChatMessageBucket::lastCursor)
+                .max(Comparator.naturalOrder());
+    }
+
+    /**
+     * One archived message of the user (including a legacy inline image, if any).
+     */
+    public Optional<ChatMessage> findMessage(String userId, String messageId) {
+        return archiveRepository.findFirstByUserIdAndMessageIds(userId, messageId)
+                .flatMap(bucket -> load(bucket).stream().filter(m -> messageId.equals(m.getId())).findFirst());
+    }
+
+    public boolean contains(String userId, String messageId) {
+        return archiveRepository.existsByUserIdAndMessageIds(userId, messageId);
+    }
+
+    public boolean referencesImage(String userId, String imageId) {
+        return archiveRepository.existsByUserIdAndImageIds(userId, imageId);
+    }
+
+    private List<ChatMessageBucket> summaries(String userId, Sort.Direction direction) {
+        return archiveRepository.findSummariesByUserId(userId,
+                direction == Sort.Direction.ASC ? Sort.by(direction, "firstTimestamp", "firstId")
+                        : Sort.by(direction, "lastTimestamp", "lastId"));
+    }
+
+    /**
+     * Decompresses a bucket (fetching its payload first if only the summary was loaded).
+     */
+    private List<ChatMessage> load(ChatMessageBucket bucket) {
+        byte[] compressed = bucket.getMessages();
+        if (compressed == null) {
+            compressed = archiveRepository.findById(bucket.getId()).map(ChatMessageBucket::getMessages).orElse(null);
+            if (compressed == null) {
+                return List.of(); // Rewritten or removed in the meantime
+            }
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return reader.readValue(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt archive bucket " + bucket.getId(), e);
+        }
+    }
+
+    private byte[] encode(List<ChatMessage> messages) {
+        try {
+            return writer.writeValueAsBytes(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("horizon", horizon().toString());
+        stats.put("runs", runs.get());
+        stats.put("lastRun", lastRun != null ? lastRun.toString() : null);
+        stats.put("archivedMessages", archivedMessages.get());
+        stats.put("bucketsWritten", writtenBuckets.get());
+        stats.put("compressionRatio", compressedBytes.get() == 0 ? 0.0
+                : (double) rawBytes.get() / compressedBytes.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatCursor;
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Writes a user's full chat history as NDJSON (one JSON object per line, oldest first)
+ * while reading it, so memory use does not grow with the history:
+ * - archived messages are decompressed one bucket at a time ({@link ChatArchiveService#streamAll}),
+ *   live ones come through a Mongo cursor ({@link ChatRepository#streamWithoutImagesByUserId})
+ * - with images, each one is Base64-encoded chunk by chunk from GridFS straight into the output
+ * Line format: {"id", "sender", "message", "timestamp", "imageId"} plus, with images,
+ * "imageContentType" (stored images only) and "image" (Base64).
+ */
+@Service
+public class ChatExportService {
+
+    private static final Sort HISTORY_ORDER = Sort.by(Sort.Direction.ASC, "timestamp", "_id");
+
+    private final ChatRepository chatRepository;
+    private final ChatArchiveService archive;
+    private final ImageStore imageStore;
+    private final ObjectMapper objectMapper;
+
+    public ChatExportService(ChatRepository chatRepository, ChatArchiveService archive, ImageStore imageStore,
+            ObjectMapper objectMapper) {
+        this.chatRepository = chatRepository;
+        this.archive = archive;
+        this.imageStore = imageStore;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the export to {@code out} (not closed).
+     *
+     * @param includeImages Whether to embed the images as Base64.
+     * @return The number of messages written.
+     */
+    public long export(String userId, boolean includeImages, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        long count = 0;
+        ChatCursor lastArchived = null;
+        try (JsonGenerator gen = objectMapper.createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(null); // Lines are separated by '\n' below, not the default space
+            try (Stream<ChatMessage> archived = archive.streamAll(userId)) {
+                for (Iterator<ChatMessage> it = archived.iterator(); it.hasNext(); ) {
+                    ChatMessage message = it.next();
+                    write(gen, message, includeImages);
+                    lastArchived = ChatCursor.of(message);
+                    count++;
+                }
+            }
+            try (Stream<ChatMessage> live = includeImages ? chatRepository.streamByUserId(userId, HISTORY_ORDER)
+                    : chatRepository.streamWithoutImagesByUserId(userId, HISTORY_ORDER)) {
+                for (Iterator<ChatMessage> it = live.iterator(); it.hasNext(); ) {
+                    ChatMessage message = it.next();
+                    // Still in both tiers after an interrupted compaction: already written from the archive
+                    if (lastArchived != null && ChatCursor.of(message).compareTo(lastArchived) <= 0
+                            && archive.contains(userId, message.getId())) {
+                        continue;
+                    }
+                    write(gen, message, includeImages);
+                    count++;
+                }
+            }
+        }
+        System.out.println("Exported " + count + " messages for user " + userId
+                + (includeImages ? " with images" : "") + " in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        return count;
+    }
+
+    private void write(JsonGenerator gen, ChatMessage message, boolean includeImages) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("id", message.getId());
+        gen.writeStringField("sender", message.getSender());
+        gen.writeStringField("message", message.getMessage());
+        gen.writeObjectField("timestamp", message.getTimestamp());
+        gen.writeStringField("imageId", message.getImageId());
+        if (includeImages) {
+            writeImage(gen, message);
+        }
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    private void writeImage(JsonGenerator gen, ChatMessage message) throws IOException {
+        if (message.getImageId() != null) {
+            Optional<GridFsResource> image = imageStore.load(message.getImageId());
+            if (image.isPresent()) {
+                GridFsResource resource = image.get();
+                gen.writeStringField("imageContentType", resource.getContentType());
+                gen.writeFieldName("image");
+                try (InputStream in = resource.getInputStream()) {
+                    gen.writeBinary(in, (int) resource.contentLength());
+                }
+            }
+        } else if (message.getImageBase64() != null && !message.getImageBase64().isEmpty()) {
+            gen.writeStringField("image", message.getImageBase64()); // Legacy inline image, already Base64
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists ChatMessages for ChatService.
+ * By default every message is saved synchronously. With
+ * {@code chat.persistence.write-behind.enabled=true} messages are queued and a background
+ * flusher writes them with one bulk insert per batch (up to {@code batch-size} messages, or
+ * whatever arrived within {@code flush-interval}), so request latency no longer includes
+ * MongoDB write latency.
+ * - Durability: with {@code flush-on-ack=true} {@link #save} waits until the batch holding
+ *   the message is written (still one insert for many concurrent requests).
+ * - Backpressure: when the queue is full, {@link #save} waits up to {@code enqueue-timeout}
+ *   and then writes the message itself on the caller's thread.
+ * - Shutdown: queued messages are drained before the application context closes.
+ */
+@Component
+public class ChatMessageWriter {
+
+    private final ChatRepository chatRepository;
+    private final boolean writeBehind;
+    private final boolean flushOnAck;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long enqueueTimeoutNanos;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong flushedMessages = new AtomicLong();
+    private final AtomicLong callerRunsWrites = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    public ChatMessageWriter(ChatRepository chatRepository,
+            @Value("${chat.persistence.write-behind.enabled:false}") boolean writeBehind,
+            @Value("${chat.persistence.write-behind.flush-on-ack:false}") boolean flushOnAck,
+            @Value("${chat.persistence.write-behind.batch-size:100}") int batchSize,
+            @Value("${chat.persistence.write-behind.flush-interval:200ms}") Duration flushInterval,
+            @Value("${chat.persistence.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.persistence.write-behind.enqueue-timeout:50ms}") Duration enqueueTimeout) {
+        this.chatRepository = chatRepository;
+        this.writeBehind = writeBehind;
+        this.flushOnAck = flushOnAck;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        if (writeBehind) {
+            this.flusher = Thread.ofPlatform().daemon().name("chat-write-behind").start(this::runFlusher);
+            System.out.println("Chat write-behind enabled (batch " + this.batchSize + ", interval " + flushInterval
+                    + ", flush-on-ack " + flushOnAck + ")");
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Saves a message: directly, or through the write-behind queue when enabled.
+     */
+    public void save(ChatMessage message) {
+        if (!writeBehind || !running) {
+            chatRepository.save(message);
+            return;
+        }
+        if (message.getId() == null) {
+            // Fixed before the bulk insert, so retrying a partly written batch overwrites
+            // the documents that made it instead of inserting them again under new ids
+            message.setId(new ObjectId().toHexString());
+        }
+        PendingWrite write = new PendingWrite(message);
+        boolean queued;
+        try {
+            queued = queue.offer(write, enqueueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            // Queue is full: slow this caller down instead of growing without bound
+            callerRunsWrites.incrementAndGet();
+            chatRepository.save(message);
+            return;
+        }
+        if (flushOnAck) {
+            write.flushed.join();
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("writeBehind", writeBehind);
+        stats.put("queued", queue.size());
+        stats.put("flushedBatches", flushedBatches.get());
+        stats.put("flushedMessages", flushedMessages.get());
+        stats.put("callerRunsWrites", callerRunsWrites.get());
+        stats.put("failedWrites", failedWrites.get());
+        return stats;
+    }
+
+    /**
+     * Collects a batch (until it is full or the flush interval has passed since its first
+     * message) and writes it with a single bulk insert. Keeps going after shutdown starts
+     * until the queue is empty.
+     */
+    private void runFlusher() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Only interrupted on forced shutdown: write what was collected, then drain the rest
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Write-behind flusher error: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        batch.forEach(write -> messages.add(write.message));
+        try {
+            chatRepository.insert(messages);
+            flushedBatches.incrementAndGet();
+            flushedMessages.addAndGet(messages.size());
+            batch.forEach(write -> write.flushed.complete(null));
+        } catch (RuntimeException bulkError) {
+            // Bulk insert failed (e.g. MongoDB briefly unavailable): retry one by one so one bad
+            // message doesn't lose the whole batch. The ids are already set, so save() upserts
+            // the messages the ordered insert wrote before it stopped.
+            System.out.println("Bulk insert of " + messages.size() + " messages failed, retrying singly: "
+                    + bulkError.getMessage());
+            for (PendingWrite write : batch) {
+                try {
+                    chatRepository.save(write.message);
+                    flushedMessages.incrementAndGet();
+                    write.flushed.complete(null);
+                } catch (RuntimeException e) {
+                    failedWrites.incrementAndGet();
+                    write.flushed.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        if (flusher.isAlive()) {
+            System.out.println("Write-behind flusher did not finish; " + queue.size() + " messages not persisted");
+            return;
+        }
+        // Messages queued while the flusher was exiting
+        List<PendingWrite> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    private static final class PendingWrite {
+        private final ChatMessage message;
+        private final CompletableFuture<Void> flushed = new CompletableFuture<>();
+
+        private PendingWrite(ChatMessage message) {
+            this.message = message;
+        }
+    }
+}
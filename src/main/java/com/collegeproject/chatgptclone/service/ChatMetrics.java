@@ -0,0 +1,106 @@
+package com.collegeproject.chatgptclone.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for the chat pipeline (scraped from /actuator/prometheus).
+ * - {@code chat.stage}: one timer per stage of a request (tags {@code stage}, {@code mode}),
+ *   with p50/p95/p99 and a histogram for server-side percentiles.
+ * - {@code chat.requests}: end-to-end time per request, tagged with its outcome.
+ * - {@code chat.cancellations}, {@code chat.errors}, {@code chat.fallback.replies}: counters.
+ */
+@Component
+public class ChatMetrics {
+
+    public static final String IMAGE_PREPROCESS = "image_preprocess";  // decode, downscale, re-encode an upload
+    public static final String USER_MESSAGE_SAVE = "user_message_save";
+    public static final String CONTEXT_ASSEMBLY = "context_assembly"; // history + document retrieval
+    public static final String LLM_QUEUE = "llm_queue";               // waiting for an admission slot
+    public static final String LLM_CALL = "llm_call";
+    public static final String LLM_COALESCED = "llm_coalesced";  // waiting for an identical request's call
+    public static final String BOT_MESSAGE_SAVE = "bot_message_save";
+
+    public static final String OUTCOME_OK = "ok";
+    public static final String OUTCOME_CACHED = "cached";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+    public static final String OUTCOME_FALLBACK = "fallback";
+    public static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry registry;
+
+    public ChatMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Runs one stage of a request and records its duration.
+     *
+     * @param mode "send" (blocking) or "stream".
+     */
+    public <T> T time(String stage, String mode, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            recordStage(stage, mode, System.nanoTime() - start);
+        }
+    }
+
+    public void time(String stage, String mode, Runnable work) {
+        time(stage, mode, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public void recordStage(String stage, String mode, long nanos) {
+        Timer.builder("chat.stage")
+                .description("Time spent in one stage of a chat request")
+                .tag("stage", stage)
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a finished request and counts errors and fallback replies.
+     */
+    public void recordRequest(String mode, String outcome, long startNanos) {
+        Timer.builder("chat.requests")
+                .description("End-to-end chat request time")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (OUTCOME_FALLBACK.equals(outcome)) {
+            counter("chat.fallback.replies", "Replies sent because the AI service was unreachable").increment();
+        } else if (OUTCOME_ERROR.equals(outcome)) {
+            counter("chat.errors", "Requests answered with an error from the AI service").increment();
+        }
+    }
+
+    /**
+     * @param aborted Whether a running request was aborted (false: remembered for later).
+     */
+    public void cancellation(boolean aborted) {
+        Counter.builder("chat.cancellations")
+                .description("Cancel requests received")
+                .tag("result", aborted ? "aborted" : "pending")
+                .register(registry)
+                .increment();
+    }
+
+    private Counter counter(String name, String description) {
+        return Counter.builder(name).description(description).register(registry);
+    }
+}
@@ -93,168 +93,581 @@
 
 package com.collegeproject.chatgptclone.service;
 
+import com.collegeproject.chatgptclone.model.ChatCursor;
+import com.collegeproject.chatgptclone.model.ChatHistoryPage;
 import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.model.ChatMessageView;
 import com.collegeproject.chatgptclone.repository.ChatRepository;
+import com.collegeproject.chatgptclone.retrieval.RetrievalService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class ChatService {
 
-    private final ChatRepository chatRepository;
-    private final RestTemplate restTemplate;
+    private static final String STOPPED_MESSAGE = "Request Stopped by you";
+    private static final String LLM_UNAVAILABLE_MESSAGE = "Error: Could not connect to the AI Service. Is 'python app.py' running?";
+    private static final String MODE_SEND = "send";
+    private static final String MODE_STREAM = "stream";
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
 
-    // URL of your Python LLM Service (running Ollama/LLaVA)
-    private static final String LLM_API_URL = "http://127.0.0.1:5000/predict";
+    private final ChatRepository chatRepository;
+    private final ChatMessageWriter messageWriter; // Direct or write-behind (batched) persistence
+    private final LlmClient llmClient; // Pooled client for the Python LLM Service (llm.service.* properties)
+    private final LlmAdmissionScheduler admissionScheduler; // Bounded, per-user fair queue in front of the LLM
+    private final CancellationRegistry cancellationRegistry; // Running requests + expiring early cancels
+    private final ImageStore imageStore; // Content-addressed image storage (GridFS)
+    private final RecentConversationCache recentConversations; // Last turns per user, for LLM context
+    private final LlmResponseCache responseCache; // Answers to repeated questions (normalized prompt + image + history)
+    private final RetrievalService retrievalService; // Document context (RAG) from the in-app HNSW index
+    private final ChatMetrics metrics; // Per-stage timers and outcome counters (Micrometer)
+    private final LlmRequestCoalescer coalescer; // Identical in-flight prompts share one LLM call
+    private final ChatArchiveService archive; // Old messages, compacted into compressed per-month buckets
+    private final ImagePreprocessor imagePreprocessor; // Downscales uploads to what LLaVA actually looks at
 
     // Constructor Injection
     // We REMOVED QnARepository because we are now using the Python AI instead.
     @Autowired
-    public ChatService(ChatRepository chatRepository) {
+    public ChatService(ChatRepository chatRepository, ChatMessageWriter messageWriter, LlmClient llmClient,
+            LlmAdmissionScheduler admissionScheduler,
+            CancellationRegistry cancellationRegistry, ImageStore imageStore,
+            RecentConversationCache recentConversations, LlmResponseCache responseCache,
+            RetrievalService retrievalService, ChatMetrics metrics, LlmRequestCoalescer coalescer,
+            ChatArchiveService archive, ImagePreprocessor imagePreprocessor) {
         this.chatRepository = chatRepository;
-        this.restTemplate = new RestTemplate(); // Initialize the REST client for HTTP calls
+        this.messageWriter = messageWriter;
+        this.llmClient = llmClient;
+        this.admissionScheduler = admissionScheduler;
+        this.cancellationRegistry = cancellationRegistry;
+        this.imageStore = imageStore;
+        this.recentConversations = recentConversations;
+        this.responseCache = responseCache;
+        this.retrievalService = retrievalService;
+        this.metrics = metrics;
+        this.coalescer = coalescer;
+        this.archive = archive;
+        this.imagePreprocessor = imagePreprocessor;
+    }
+
+    /**
+     * Cancels a specific request ID. If the request is running, its LLM call is aborted
+     * (or it leaves the LLM queue); otherwise the cancel is remembered for a while in case
+     * the request arrives later. Only requests of {@code userId} are affected.
+     */
+    public void cancelRequest(String userId, String requestId) {
+        boolean aborted = cancellationRegistry.cancel(userId, requestId);
+        metrics.cancellation(aborted);
+        System.out.println("Request " + (aborted ? "aborted: " : "marked for cancellation: ") + requestId);
     }
 
     /**
      * Processes a user message:
+     * 0. Answers a question seen before straight from the LlmResponseCache.
      * 1. Saves user message to MongoDB.
      * 2. Sends message to Python LLM Service.
-     * 3. Saves LLM response to MongoDB.
+     * 3. Saves LLM response to MongoDB (UNLESS CANCELLED).
      * 4. Returns the response.
      */
-    private final java.util.Set<String> cancelledRequestIds = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    public String sendMessage(String userId, String userMessage, String requestId, String imageBase64) {
+        try (ImageUpload image = ImageUpload.ofBase64(imageBase64)) {
+            return sendMessage(userId, userMessage, requestId, image);
+        }
+    }
 
     /**
-     * Marks a specific request ID as cancelled.
+     * {@link #sendMessage(String, String, String, String)} for an image uploaded as binary
+     * (multipart). The caller keeps ownership of {@code upload} and closes it afterwards.
      */
-    public void cancelRequest(String requestId) {
-        cancelledRequestIds.add(requestId);
-        System.out.println("Request marked for cancellation: " + requestId);
+    public String sendMessage(String userId, String userMessage, String requestId, ImageUpload upload) {
+        long started = System.nanoTime();
+        try (CancellationRegistry.InFlightRequest inFlight = cancellationRegistry.register(userId, requestId)) {
+            // The message keeps the (downscaled) image's hash, also part of the cache key; the image
+            // itself is only stored with the message, so a rejected request leaves nothing behind
+            PreparedImage image = prepareImage(userMessage, upload, MODE_SEND);
+            ChatMessage userChatMessage = createUserMessage(userId, userMessage, image);
+            ImageUpload llmImage = image != null ? image.llmImage() : null;
+            // Conversation context, taken before this message is added to it; the answer depends on it,
+            // so it is part of the cache key
+            List<ChatMessage> history = recentConversations.getRecent(userId);
+            LlmResponseCache.Key cacheKey = responseCache.keyFor(userMessage, userChatMessage.getImageId(),
+                    historyHash(history));
+
+            // Asked before: answer from the cache without queueing for the LLM
+            Optional<String> cached = responseCache.get(cacheKey);
+            if (cached.isPresent()) {
+                String botResponse = saveCachedExchange(userChatMessage, image, cached.get(), MODE_SEND);
+                metrics.recordRequest(MODE_SEND, ChatMetrics.OUTCOME_CACHED, started);
+                return botResponse;
+            }
+
+            // 0. Take a place in the LLM queue first, so a full queue fails fast (429) before anything is saved
+            CompletableFuture<LlmAdmissionScheduler.Permit> admission = reserveLlmSlot(userId);
+            Runnable leaveQueue = () -> admission.cancel(false);
+            LlmContext llmContext;
+            try {
+                inFlight.onCancel(leaveQueue); // Stop waits in the queue
+
+                // Document context; a null document context leaves retrieval to the Python service
+                llmContext = metrics.time(ChatMetrics.CONTEXT_ASSEMBLY, MODE_SEND, () -> new LlmContext(history,
+                        retrievalService.retrieveContext(userMessage).orElse(null)));
+
+                // 1. Save user message to MongoDB
+                saveUserMessage(userChatMessage, image, MODE_SEND);
+                System.out.println("User message saved for user " + userId + ": " + userMessage
+                        + (upload != null ? " [Image Attached]" : ""));
+            } catch (RuntimeException | Error e) {
+                releaseLlmSlot(admission); // Failed before the LLM call: don't keep the slot
+                throw e;
+            }
+
+            // Check cancellation before calling LLM (fast fail)
+            if (inFlight.isCancelled()) {
+                releaseLlmSlot(admission);
+                return saveStoppedMessage(userId, MODE_SEND, started);
+            }
+
+            // 2. Call the Python LLM Service once our turn comes (or share an identical call in flight)
+            // This is a BLOCKING call. If cancelRequest is called from another thread,
+            // the HTTP call is aborted and we return right away.
+            String botResponse = callLlm(userChatMessage, llmContext, admission, leaveQueue, MODE_SEND, inFlight, null,
+                    (cancellation, tokens) -> getResponseFromLLM(userId, llmContext.history(), userMessage, llmImage,
+                            llmContext.documents(), cancellation, cacheKey)); // Pass image AND history
+
+            // Check cancellation AGAIN after LLM returns
+            if (inFlight.isCancelled()) {
+                System.out.println("Request " + inFlight.getRequestId() + " was cancelled during generation.");
+                return saveStoppedMessage(userId, MODE_SEND, started);
+            }
+
+            // 3. Save bot's response to MongoDB
+            ChatMessage botChatMessage = new ChatMessage(userId, "bot", botResponse);
+            metrics.time(ChatMetrics.BOT_MESSAGE_SAVE, MODE_SEND, () -> saveMessage(botChatMessage));
+            System.out.println("Bot message saved for user " + userId + ": " + botResponse);
+
+            metrics.recordRequest(MODE_SEND, outcomeOf(botResponse), started);
+            return botResponse;
+        }
     }
 
     /**
-     * Processes a user message:
-     * 1. Saves user message to MongoDB.
-     * 2. Sends message to Python LLM Service.
-     * 3. Saves LLM response to MongoDB (UNLESS CANCELLED).
-     * 4. Returns the response.
+     * Streaming variant of {@link #sendMessage}: relays tokens to {@code onToken} as the
+     * Python service produces them, then saves the complete bot reply once the stream ends.
+     * If the request is cancelled mid-stream, the LLM connection is closed and only the
+     * "stopped" message is saved.
+     * The caller reserves the LLM slot up front with {@link #reserveLlmSlot}, so a full queue
+     * can be reported as 429 before the stream starts; if the request fails before its LLM call,
+     * the slot is given back here. The caller decodes the image (a bad one is a 400 before any
+     * slot is taken) and keeps ownership of {@code upload}.
+     *
+     * @return The full bot response (or the stopped message).
      */
-    public String sendMessage(String userId, String userMessage, String requestId, String imageBase64) {
-        // 1. Save user message to MongoDB
-        ChatMessage userChatMessage = new ChatMessage(userId, "user", userMessage, imageBase64); // Pass image
-        chatRepository.save(userChatMessage);
-        System.out.println("User message saved for user " + userId + ": " + userMessage
-                + (imageBase64 != null ? " [Image Attached]" : ""));
-
-        // Check cancellation before calling LLM (fast fail)
-        if (requestId != null && cancelledRequestIds.contains(requestId)) {
-            cancelledRequestIds.remove(requestId); // Cleanup
-            saveStoppedMessage(userId);
-            return "Request Stopped by you";
+    public String streamMessage(String userId, String userMessage, String requestId, ImageUpload upload,
+            CompletableFuture<LlmAdmissionScheduler.Permit> admission, Consumer<String> onToken) {
+        try {
+            return streamWithSlot(userId, userMessage, requestId, upload, admission, onToken);
+        } catch (RuntimeException | Error e) {
+            releaseLlmSlot(admission); // No-op if the LLM call already gave it back
+            throw e;
         }
+    }
 
-        // 2. Call the Python LLM Service
-        // This is a BLOCKING call. While this runs, cancelRequest might be called in
-        // another thread.
-        String botResponse = getResponseFromLLM(userId, userMessage, imageBase64); // Pass image AND userId
+    private String streamWithSlot(String userId, String userMessage, String requestId, ImageUpload upload,
+            CompletableFuture<LlmAdmissionScheduler.Permit> admission, Consumer<String> onToken) {
+        long started = System.nanoTime();
+        try (CancellationRegistry.InFlightRequest inFlight = cancellationRegistry.register(userId, requestId)) {
+            Runnable leaveQueue = () -> admission.cancel(false);
+            inFlight.onCancel(leaveQueue);
+
+            PreparedImage image = prepareImage(userMessage, upload, MODE_STREAM);
+            ChatMessage userChatMessage = createUserMessage(userId, userMessage, image);
+            ImageUpload llmImage = image != null ? image.llmImage() : null;
+            List<ChatMessage> history = recentConversations.getRecent(userId);
+            LlmResponseCache.Key cacheKey = responseCache.keyFor(userMessage, userChatMessage.getImageId(),
+                    historyHash(history));
+
+            Optional<String> cached = responseCache.get(cacheKey);
+            if (cached.isPresent()) {
+                releaseLlmSlot(admission); // Not needed after all
+                onToken.accept(cached.get()); // The whole answer as a single token
+                String botResponse = saveCachedExchange(userChatMessage, image, cached.get(), MODE_STREAM);
+                metrics.recordRequest(MODE_STREAM, ChatMetrics.OUTCOME_CACHED, started);
+                return botResponse;
+            }
+
+            LlmContext llmContext = metrics.time(ChatMetrics.CONTEXT_ASSEMBLY, MODE_STREAM, () -> new LlmContext(
+                    history, retrievalService.retrieveContext(userMessage).orElse(null)));
+
+            saveUserMessage(userChatMessage, image, MODE_STREAM);
+            System.out.println("User message saved for user " + userId + " (streaming): " + userMessage
+                    + (upload != null ? " [Image Attached]" : ""));
+
+            if (inFlight.isCancelled()) {
+                releaseLlmSlot(admission);
+                return saveStoppedMessage(userId, MODE_STREAM, started);
+            }
+
+            String botResponse = callLlm(userChatMessage, llmContext, admission, leaveQueue, MODE_STREAM, inFlight,
+                    onToken, (cancellation, tokens) -> streamResponseFromLLM(userId, llmContext.history(), userMessage,
+                            llmImage, llmContext.documents(), cancellation, tokens, cacheKey));
+
+            if (inFlight.isCancelled()) {
+                System.out.println("Request " + inFlight.getRequestId() + " was cancelled during streaming.");
+                return saveStoppedMessage(userId, MODE_STREAM, started);
+            }
 
-        // Check cancellation AGAIN after LLM returns
-        if (requestId != null && cancelledRequestIds.contains(requestId)) {
-            System.out.println("Request " + requestId + " was cancelled during generation.");
-            cancelledRequestIds.remove(requestId); // Cleanup
+            // Save the bot reply ONCE, after the last token
+            ChatMessage botChatMessage = new ChatMessage(userId, "bot", botResponse);
+            metrics.time(ChatMetrics.BOT_MESSAGE_SAVE, MODE_STREAM, () -> saveMessage(botChatMessage));
+            System.out.println("Bot message saved for user " + userId + " (streamed " + botResponse.length() + " chars)");
 
-            // NEW: Save "Request Stopped by you" to DB
-            saveStoppedMessage(userId);
+            metrics.recordRequest(MODE_STREAM, outcomeOf(botResponse), started);
+            return botResponse;
+        }
+    }
+
+    /**
+     * Re-indexes the documents: incrementally in the Spring retrieval index (which also clears
+     * cached answers when something changed), or in the Python service when retrieval is disabled.
+     */
+    public String reloadDocuments() {
+        if (retrievalService.isEnabled()) {
+            return retrievalService.reload().join();
+        }
+        String status = llmClient.reloadDocuments().join();
+        responseCache.onCorpusReloaded();
+        return status;
+    }
+
+    /**
+     * Queues the user for an LLM slot.
+     *
+     * @throws AdmissionRejectedException if the queue is full (mapped to HTTP 429).
+     */
+    public CompletableFuture<LlmAdmissionScheduler.Permit> reserveLlmSlot(String userId) {
+        return admissionScheduler.enqueue(userId);
+    }
+
+    /**
+     * Runs this request's LLM call, unless an identical one (same prompt, image and document
+     * context; see {@link LlmRequestCoalescer}) is already in flight, in which case the request
+     * gives its queue place back and waits for that call's answer.
+     * As the leader of a shared call, a cancel only aborts the call once every request
+     * sharing it has cancelled; until then the leader keeps running it for the others.
+     *
+     * @param leaveQueue The cancel action registered for {@code admission}; the shared call takes it over.
+     * @param onToken    Receives the tokens (streaming), or null.
+     * @param llmCall    The actual call, given its cancellation signal and token consumer.
+     */
+    private String callLlm(ChatMessage userChatMessage, LlmContext llmContext,
+            CompletableFuture<LlmAdmissionScheduler.Permit> admission, Runnable leaveQueue, String mode,
+            CancellationRegistry.InFlightRequest inFlight, Consumer<String> onToken,
+            BiFunction<CancellationSignal, Consumer<String>, String> llmCall) {
+        LlmRequestCoalescer.Key flightKey = coalescer.keyFor(userChatMessage.getMessage(),
+                userChatMessage.getImageId(), historyHash(llmContext.history()), llmContext.documents());
+        if (flightKey == null) {
+            return withLlmSlot(admission, mode, () -> llmCall.apply(inFlight, onToken));
+        }
+        try (LlmRequestCoalescer.Participant participant = coalescer.join(flightKey, inFlight.getRequestId(), onToken)) {
+            if (participant.isLeader()) {
+                inFlight.removeOnCancel(leaveQueue); // From now on the flight decides when to abort
+                inFlight.onCancel(participant::cancel);
+                String response = null;
+                try {
+                    response = withLlmSlot(admission, mode, () -> llmCall.apply(participant.flight(),
+                            onToken != null ? participant::emit : null));
+                    return response;
+                } finally {
+                    participant.complete(response);
+                }
+            }
+
+            releaseLlmSlot(admission); // The leader's call answers for us
+            inFlight.onCancel(participant::cancel);
+            String response = metrics.time(ChatMetrics.LLM_COALESCED, mode, () -> awaitShared(participant));
+            if (onToken != null && !participant.receivedTokens() && ChatMetrics.OUTCOME_OK.equals(outcomeOf(response))) {
+                onToken.accept(response); // The leader didn't stream: the whole answer as one token
+            }
+            System.out.println("Request " + inFlight.getRequestId() + " shared the LLM call of "
+                    + participant.flight().getRequestId());
+            return response;
+        }
+    }
+
+    private static String awaitShared(LlmRequestCoalescer.Participant participant) {
+        try {
+            return participant.await();
+        } catch (CancellationException e) {
+            return STOPPED_MESSAGE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return LLM_UNAVAILABLE_MESSAGE;
+        } catch (Exception e) {
+            return LLM_UNAVAILABLE_MESSAGE;
+        }
+    }
+
+    /**
+     * Waits for the reserved slot, runs the LLM call, and always gives the slot back.
+     * The wait and the call are timed as separate stages.
+     */
+    private String withLlmSlot(CompletableFuture<LlmAdmissionScheduler.Permit> admission, String mode,
+            Supplier<String> llmCall) {
+        long queued = System.nanoTime();
+        try (LlmAdmissionScheduler.Permit permit = admission.get()) {
+            metrics.recordStage(ChatMetrics.LLM_QUEUE, mode, System.nanoTime() - queued);
+            return metrics.time(ChatMetrics.LLM_CALL, mode, llmCall);
+        } catch (CancellationException e) {
+            return STOPPED_MESSAGE; // Cancelled while waiting in the queue
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseLlmSlot(admission);
+            return LLM_UNAVAILABLE_MESSAGE;
+        } catch (Exception e) {
+            releaseLlmSlot(admission);
+            return LLM_UNAVAILABLE_MESSAGE;
+        }
+    }
+
+    /**
+     * Leaves the queue, or returns the slot if it was already granted. Callers of
+     * {@link #reserveLlmSlot} use this when the request can't run after all.
+     */
+    public void releaseLlmSlot(CompletableFuture<LlmAdmissionScheduler.Permit> admission) {
+        if (!admission.cancel(false) && !admission.isCompletedExceptionally()) {
+            admission.join().close();
+        }
+    }
+
+    /**
+     * Downscales an attached image for the LLM. What the ImageStore will keep (the downscaled
+     * image, or the upload itself with chat.image.keep-original) is only hashed here;
+     * {@link #saveUserMessage} stores it.
+     *
+     * @return null if no image is attached.
+     */
+    private PreparedImage prepareImage(String userMessage, ImageUpload original, String mode) {
+        if (original == null) {
+            return null;
+        }
+        boolean ocr = userMessage != null && userMessage.trim().equals("[[OCR_MODE]]");
+        ImageUpload forLlm = metrics.time(ChatMetrics.IMAGE_PREPROCESS, mode,
+                () -> imagePreprocessor.process(original, ocr));
+        ImageUpload toStore = imagePreprocessor.isKeepOriginal() ? original : forLlm;
+        return new PreparedImage(toStore.sha256(), forLlm, toStore);
+    }
 
-            return "Request Stopped by you";
+    /**
+     * Builds the user's ChatMessage, keeping only the content hash of an attached image.
+     */
+    private ChatMessage createUserMessage(String userId, String userMessage, PreparedImage image) {
+        ChatMessage userChatMessage = new ChatMessage(userId, "user", userMessage);
+        if (image != null) {
+            userChatMessage.setImageId(image.imageId());
         }
+        return userChatMessage;
+    }
 
-        // 3. Save bot's response to MongoDB
-        ChatMessage botChatMessage = new ChatMessage(userId, "bot", botResponse);
-        chatRepository.save(botChatMessage);
-        System.out.println("Bot message saved for user " + userId + ": " + botResponse);
+    /**
+     * Stores the user's image (once per content hash) and then saves the message referencing it.
+     */
+    private void saveUserMessage(ChatMessage userChatMessage, PreparedImage image, String mode) {
+        metrics.time(ChatMetrics.USER_MESSAGE_SAVE, mode, () -> {
+            if (image != null) {
+                imageStore.store(image.toStore());
+            }
+            saveMessage(userChatMessage);
+        });
+    }
+
+    /**
+     * Persists a message (synchronously, or queued when write-behind is enabled) and keeps
+     * the in-memory conversation context up to date.
+     */
+    private void saveMessage(ChatMessage message) {
+        recentConversations.record(message);
+        messageWriter.save(message);
+    }
 
+    /**
+     * Saves a question and its cached answer, as if the LLM had just produced it.
+     */
+    private String saveCachedExchange(ChatMessage userChatMessage, PreparedImage image, String botResponse,
+            String mode) {
+        saveUserMessage(userChatMessage, image, mode);
+        ChatMessage botChatMessage = new ChatMessage(userChatMessage.getUserId(), "bot", botResponse);
+        metrics.time(ChatMetrics.BOT_MESSAGE_SAVE, mode, () -> saveMessage(botChatMessage));
+        System.out.println("Cached answer served for user " + userChatMessage.getUserId() + ": "
+                + userChatMessage.getMessage());
         return botResponse;
     }
 
-    private void saveStoppedMessage(String userId) {
-        String stopMsg = "Request Stopped by you";
-        ChatMessage stopChatMessage = new ChatMessage(userId, "bot", stopMsg);
-        chatRepository.save(stopChatMessage);
+    private String saveStoppedMessage(String userId, String mode, long started) {
+        ChatMessage stopChatMessage = new ChatMessage(userId, "bot", STOPPED_MESSAGE);
+        saveMessage(stopChatMessage);
         System.out.println("Saved STOPPED message for user " + userId);
+        metrics.recordRequest(mode, ChatMetrics.OUTCOME_CANCELLED, started);
+        return STOPPED_MESSAGE;
     }
 
     /**
-     * Helper method to send the request to the Python Microservice.
+     * Classifies a reply for the request metrics.
      */
+    private static String outcomeOf(String botResponse) {
+        if (STOPPED_MESSAGE.equals(botResponse)) {
+            return ChatMetrics.OUTCOME_CANCELLED; // Cancelled while waiting for a slot
+        }
+        if (LLM_UNAVAILABLE_MESSAGE.equals(botResponse)) {
+            return ChatMetrics.OUTCOME_FALLBACK;
+        }
+        return botResponse.startsWith("Error:") ? ChatMetrics.OUTCOME_ERROR : ChatMetrics.OUTCOME_OK;
+    }
+
     /**
-     * Helper method to send the request to the Python Microservice.
+     * Hash of the conversation turns {@link #buildLlmRequestBody} sends along with a prompt.
+     *
+     * @return null if no turn is sent.
      */
-    private String getResponseFromLLM(String userId, String message, String imageBase64) {
-        try {
-            // Create headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            // Fetch recent history (DISABLED FOR SPEED as per user request)
-            // List<ChatMessage> historyList =
-            // chatRepository.findTop5ByUserIdOrderByTimestampDesc(userId);
-            List<ChatMessage> historyList = new java.util.ArrayList<>();
-            // Reverse to chronological order
-            // java.util.Collections.reverse(historyList);
-
-            // Map to JSON-friendly format
-            List<Map<String, String>> historyJson = new java.util.ArrayList<>();
-            for (ChatMessage msg : historyList) {
-                Map<String, String> entry = new HashMap<>();
-                // Map 'sender' to Ollama roles
-                entry.put("role", "bot".equals(msg.getSender()) ? "assistant" : "user");
-                entry.put("content", msg.getMessage());
-                historyJson.add(entry);
+    static String historyHash(List<ChatMessage> historyList) {
+        StringBuilder turns = new StringBuilder();
+        for (ChatMessage msg : historyList) {
+            if (STOPPED_MESSAGE.equals(msg.getMessage()) || msg.getMessage() == null) {
+                continue; // Skipped by buildLlmRequestBody as well
+            }
+            // Role and length prefix, so turn boundaries can't be shifted
+            turns.append("bot".equals(msg.getSender()) ? 'a' : 'u').append(msg.getMessage().length()).append(':')
+                    .append(msg.getMessage());
+        }
+        return turns.isEmpty() ? null : ImageStore.sha256(turns.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the JSON payload for the Python service:
+     * {"message": "User's query", "image": "base64...", "history": [...], "context": "..."}
+     * The image stays an {@link ImageUpload} in the map; LlmClient encodes it while serializing.
+     *
+     * @param historyList Recent messages, oldest first (from the in-memory RecentConversationCache,
+     *                    so building the context costs no MongoDB round trip).
+     * @param context     Retrieved document context, or null to let the Python service retrieve it.
+     *                    (Package-private for the JMH benchmarks in src/jmh/java.)
+     */
+    Map<String, Object> buildLlmRequestBody(List<ChatMessage> historyList, String message, ImageUpload image,
+            String context) {
+        // Map to JSON-friendly format
+        List<Map<String, String>> historyJson = new java.util.ArrayList<>();
+        for (ChatMessage msg : historyList) {
+            if (STOPPED_MESSAGE.equals(msg.getMessage()) || msg.getMessage() == null) {
+                continue; // Stopped replies and image-only turns carry no useful context
             }
-            // Temporarily print history size
-            System.out.println("Attaching history of size: " + historyJson.size());
+            Map<String, String> entry = new HashMap<>();
+            // Map 'sender' to Ollama roles
+            entry.put("role", "bot".equals(msg.getSender()) ? "assistant" : "user");
+            entry.put("content", msg.getMessage());
+            historyJson.add(entry);
+        }
+        // Temporarily print history size
+        System.out.println("Attaching history of size: " + historyJson.size());
 
-            // Create JSON payload: {"message": "User's query", "image": "base64...",
-            // "history": [...]}
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("message", message);
-            requestBody.put("history", historyJson); // Add history
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("message", message);
+        requestBody.put("history", historyJson); // Add history
 
-            if (imageBase64 != null && !imageBase64.isEmpty()) {
-                requestBody.put("image", imageBase64);
+        if (image != null) {
+            requestBody.put("image", image);
+        }
+        if (context != null) {
+            requestBody.put("context", context);
+        }
+        return requestBody;
+    }
+
+    /**
+     * Helper method to send the request to the Python Microservice.
+     * The reply is requested in stream mode and collected here: a cancel then closes the
+     * connection, which stops the Ollama generation in app.py (its non-streaming path would
+     * run the whole inference anyway), and the backend stays busy exactly as long as it works.
+     */
+    private String getResponseFromLLM(String userId, List<ChatMessage> history, String message, ImageUpload image,
+            String context, CancellationSignal cancellation, LlmResponseCache.Key cacheKey) {
+        Map<String, Object> requestBody = buildLlmRequestBody(history, message, image, context);
+        requestBody.put("stream", true);
+        StringBuilder response = new StringBuilder();
+        try {
+            String error = llmClient.predictStream(requestBody, userId, response::append, cancellation::onCancel);
+            if (cancellation.isCancelled()) {
+                return STOPPED_MESSAGE; // Caller sees the cancelled request and saves the stopped message
+            }
+            if (error != null) {
+                return error;
+            }
+            if (response.toString().isBlank()) {
+                return "Error: The AI model returned an empty response.";
             }
+            responseCache.put(cacheKey, response.toString()); // Only real answers; errors above are never cached
+            return response.toString();
 
-            // NEW: Fetch and attach chat history for context
-            // We can't easily get userId here without passing it.
-            // So we need to update getResponseFromLLM signature or assume we passed it.
-            // Wait, I need userId to fetch history.
-            // Let's refactor getResponseFromLLM to take userId.
+        } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                return STOPPED_MESSAGE;
+            }
+            e.printStackTrace();
+            return LLM_UNAVAILABLE_MESSAGE;
+        }
+    }
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+    /**
+     * Streaming counterpart of {@link #getResponseFromLLM}: asks the Python service for
+     * NDJSON token lines ({"token": "..."} ... {"done": true}) and forwards each token.
+     * Cancelling the request closes the connection, which stops generation.
+     * Only a stream that finished normally is cached, never a partial answer.
+     */
+    private String streamResponseFromLLM(String userId, List<ChatMessage> history, String message, ImageUpload image,
+            String context, CancellationSignal cancellation, Consumer<String> onToken, LlmResponseCache.Key cacheKey) {
+        Map<String, Object> requestBody = buildLlmRequestBody(history, message, image, context);
+        requestBody.put("stream", true);
+        StringBuilder fullResponse = new StringBuilder();
 
-            // Send POST request to http://localhost:5000/predict
-            ResponseEntity<Map> response = restTemplate.postForEntity(LLM_API_URL, entity, Map.class);
+        try {
+            String error = llmClient.predictStream(requestBody, userId, token -> {
+                if (cancellation.isCancelled()) {
+                    throw new CancellationException(cancellation.getRequestId());
+                }
+                fullResponse.append(token);
+                onToken.accept(token);
+            }, cancellation::onCancel);
 
-            // Extract "response" field from JSON result
-            if (response.getBody() != null && response.getBody().containsKey("response")) {
-                return response.getBody().get("response").toString();
-            } else {
+            if (error != null) {
+                return fullResponse.length() > 0 ? fullResponse.toString() : error;
+            }
+            if (fullResponse.length() == 0) {
                 return "Error: The AI model returned an empty response.";
             }
+            if (!cancellation.isCancelled()) {
+                responseCache.put(cacheKey, fullResponse.toString());
+            }
+            return fullResponse.toString();
 
         } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                return fullResponse.toString(); // Aborted on purpose; caller saves the stopped message
+            }
             e.printStackTrace();
-            return "Error: Could not connect to the AI Service. Is 'python app.py' running?";
+            return fullResponse.length() > 0 ? fullResponse.toString()
+                    : LLM_UNAVAILABLE_MESSAGE;
         }
     }
 
@@ -264,6 +677,101 @@ public class ChatService {
      */
     public List<ChatMessage> getChatHistory(String userId) {
         // Matches the repository method defined in your report [cite: 646]
-        return chatRepository.findByUserIdOrderByTimestampAsc(userId);
+        List<ChatMessage> live = chatRepository.findByUserIdOrderByTimestampAsc(userId);
+        List<ChatMessage> archived = archive.findAll(userId);
+        if (archived.isEmpty()) {
+            return live;
+        }
+        // Archived messages come first; skip any still in both tiers (compaction interrupted)
+        Set<String> archivedIds = archived.stream().map(ChatMessage::getId).collect(Collectors.toSet());
+        List<ChatMessage> history = new java.util.ArrayList<>(archived);
+        live.stream().filter(message -> !archivedIds.contains(message.getId())).forEach(history::add);
+        return history;
+    }
+
+    /**
+     * One page of history without image payloads, oldest message first.
+     *
+     * @param before Cursor of the oldest message the client already has, or null for the newest page.
+     */
+    public ChatHistoryPage getChatHistoryPage(String userId, String before, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+        ChatCursor beforeCursor = before != null ? ChatCursor.decode(before) : null;
+
+        // Fetch one extra row to know whether an older page exists
+        List<ChatMessageView> newestFirst = chatRepository.findViewsBefore(userId, beforeCursor, pageSize + 1);
+        if (newestFirst.size() <= pageSize) {
+            // Reached the oldest live message: continue in the archive, below what we already have
+            ChatCursor archiveBefore = newestFirst.isEmpty() ? beforeCursor
+                    : ChatCursor.of(newestFirst.get(newestFirst.size() - 1));
+            newestFirst = new java.util.ArrayList<>(newestFirst);
+            archive.findBefore(userId, archiveBefore, pageSize + 1 - newestFirst.size()).stream()
+                    .map(ChatMessageView::of)
+                    .forEach(newestFirst::add);
+        }
+        boolean hasOlder = newestFirst.size() > pageSize;
+        List<ChatMessageView> messages = new java.util.ArrayList<>(newestFirst.subList(0, Math.min(pageSize, newestFirst.size())));
+        Collections.reverse(messages);
+
+        String olderCursor = hasOlder ? ChatCursor.of(messages.get(0)).encode() : null;
+        String newestCursor = messages.isEmpty() ? null : ChatCursor.of(messages.get(messages.size() - 1)).encode();
+        return new ChatHistoryPage(messages, olderCursor, newestCursor);
+    }
+
+    /**
+     * Messages newer than {@code cursor} (delta sync), oldest first, without image payloads.
+     */
+    public ChatHistoryPage getChatHistorySince(String userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+        ChatCursor after = ChatCursor.decode(cursor);
+        // A cursor from before the archive horizon (an old page) continues through archived messages first
+        List<ChatMessageView> messages = new java.util.ArrayList<>(archive.findAfter(userId, after, pageSize).stream()
+                .map(ChatMessageView::of).toList());
+        if (messages.size() < pageSize) {
+            ChatCursor liveAfter = messages.isEmpty() ? after : ChatCursor.of(messages.get(messages.size() - 1));
+            messages.addAll(chatRepository.findViewsAfter(userId, liveAfter, pageSize - messages.size()));
+        }
+        String newestCursor = messages.isEmpty() ? cursor : ChatCursor.of(messages.get(messages.size() - 1)).encode();
+        return new ChatHistoryPage(messages, null, newestCursor);
+    }
+
+    /**
+     * Encoded position of the user's newest message (null if none); changes whenever a
+     * message is added, so it doubles as the ETag of the history.
+     */
+    public String getLatestHistoryCursor(String userId) {
+        return chatRepository.findLatestCursor(userId).or(() -> archive.findLatestCursor(userId))
+                .map(ChatCursor::encode).orElse(null);
+    }
+
+    /**
+     * Loads one of the user's messages (including a legacy inline image, if any).
+     */
+    public Optional<ChatMessage> getUserMessage(String userId, String messageId) {
+        return chatRepository.findById(messageId)
+                .filter(msg -> userId.equals(msg.getUserId()))
+                .or(() -> archive.findMessage(userId, messageId));
+    }
+
+    /**
+     * Opens a stored image, if one of the user's messages references it.
+     */
+    public Optional<GridFsResource> getStoredImage(String userId, String imageId) {
+        if (!chatRepository.existsByUserIdAndImageId(userId, imageId) && !archive.referencesImage(userId, imageId)) {
+            return Optional.empty();
+        }
+        return imageStore.load(imageId);
+    }
+
+    /**
+     * What the LLM gets besides the question: recent turns and retrieved document context.
+     */
+    private record LlmContext(List<ChatMessage> history, String documents) {
+    }
+
+    /**
+     * An attached image: its ImageStore id, the image sent to the LLM and the one to store.
+     */
+    private record PreparedImage(String imageId, ImageUpload llmImage, ImageUpload toStore) {
     }
-}
\ No newline at end of file
+}
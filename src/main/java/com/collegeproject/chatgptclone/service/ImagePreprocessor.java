@@ -0,0 +1,356 @@
+package com.collegeproject.chatgptclone.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shrinks uploaded images before they go to LLaVA, which downsamples everything to a few
+ * hundred pixels anyway: a 12 MP phone photo becomes a ~100 KB JPEG, so the request body,
+ * the transfer and the model's image encoding all get cheaper.
+ * - Decodes with ImageIO, subsampling huge images while reading (a 50 MB upload is never
+ *   fully decoded; one spooled to disk is read from the file), applies the EXIF orientation,
+ *   scales the longest side down to {@code max-dimension} ({@code ocr-max-dimension} for [[OCR_MODE]], optionally in
+ *   grayscale) and re-encodes as JPEG.
+ * - Runs on a bounded pool ({@code threads}, {@code queue-capacity}); when it is saturated,
+ *   too slow, or the format is unknown to ImageIO (e.g. WebP), the original is sent as is.
+ * - Images already small enough are passed through untouched (no re-compression loss).
+ */
+@Component
+public class ImagePreprocessor {
+
+    private final boolean enabled;
+    private final boolean keepOriginal;
+    private final int maxDimension;
+    private final int ocrMaxDimension;
+    private final boolean ocrGrayscale;
+    private final float jpegQuality;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong passedThrough = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    public ImagePreprocessor(@Value("${chat.image.preprocess.enabled:true}") boolean enabled,
+            @Value("${chat.image.keep-original:false}") boolean keepOriginal,
+            @Value("${chat.image.max-dimension:672}") int maxDimension,
+            @Value("${chat.image.ocr-max-dimension:1344}") int ocrMaxDimension,
+            @Value("${chat.image.ocr-grayscale:true}") boolean ocrGrayscale,
+            @Value("${chat.image.jpeg-quality:0.85}") float jpegQuality,
+            @Value("${chat.image.preprocess.threads:0}") int threads,
+            @Value("${chat.image.preprocess.queue-capacity:32}") int queueCapacity,
+            @Value("${chat.image.preprocess.timeout:10s}") Duration timeout) {
+        this.enabled = enabled;
+        this.keepOriginal = keepOriginal;
+        this.maxDimension = maxDimension;
+        this.ocrMaxDimension = ocrMaxDimension;
+        this.ocrGrayscale = ocrGrayscale;
+        this.jpegQuality = jpegQuality;
+        this.timeout = timeout;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "image-preprocess-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ImageIO.setUseCache(false); // Decode in memory, not through temp files
+    }
+
+    /**
+     * Whether the message should keep the uploaded image rather than the preprocessed one.
+     */
+    public boolean isKeepOriginal() {
+        return keepOriginal;
+    }
+
+    /**
+     * The image to send to the LLM: {@code original} itself if it needs no processing or
+     * can't be processed right now, otherwise the (in-memory) re-encoded image.
+     *
+     * @param ocr Whether the request is a transcription ([[OCR_MODE]]).
+     */
+    public ImageUpload process(ImageUpload original, boolean ocr) {
+        if (!enabled) {
+            return original;
+        }
+        Future<byte[]> task;
+        try {
+            task = executor.submit(() -> resize(original, ocr));
+        } catch (RejectedExecutionException e) {
+            return fallback(original, "pool saturated");
+        }
+        try {
+            byte[] result = task.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (result == null) {
+                passedThrough.incrementAndGet();
+                return original;
+            }
+            processed.incrementAndGet();
+            bytesIn.addAndGet(original.size());
+            bytesOut.addAndGet(result.length);
+            return ImageUpload.ofBytes(result);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            return original;
+        } catch (Exception e) {
+            task.cancel(true);
+            return fallback(original, String.valueOf(e.getCause() != null ? e.getCause() : e));
+        }
+    }
+
+    private ImageUpload fallback(ImageUpload original, String reason) {
+        fallbacks.incrementAndGet();
+        System.out.println("Image preprocessing skipped (" + reason + "), sending the original "
+                + original.size() + " bytes");
+        return original;
+    }
+
+    /**
+     * @return The re-encoded image, or null if the original should be used as is.
+     */
+    byte[] resize(ImageUpload original, boolean ocr) throws IOException {
+        int limit = ocr ? ocrMaxDimension : maxDimension;
+        boolean grayscale = ocr && ocrGrayscale;
+        try (ImageInputStream input = original.openImageInputStream()) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int longest = Math.max(width, height);
+                if (longest <= limit && !grayscale) {
+                    return null;
+                }
+                // Skip pixels while decoding, keeping at least twice the target size for a smooth downscale
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longest / (limit * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+
+                image = orient(image, exifOrientation(original.head()));
+                image = scale(image, limit, grayscale);
+                byte[] encoded = encodeJpeg(image);
+                return encoded.length < original.size() || grayscale ? encoded : null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the longest side down to {@code limit} by successive halving (bilinear steps look
+     * close to bicubic at a fraction of the cost), flattening transparency onto white.
+     */
+    private static BufferedImage scale(BufferedImage image, int limit, boolean grayscale) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double factor = Math.min(1.0, (double) limit / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * factor));
+        int targetHeight = Math.max(1, (int) Math.round(height * factor));
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            boolean last = width == targetWidth && height == targetHeight;
+            int type = last && grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+                g.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            image = step;
+        } while (width != targetWidth || height != targetHeight);
+        return image;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(buffer)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Applies an EXIF orientation (1-8): re-encoding drops the tag, so phone photos would
+     * otherwise arrive sideways.
+     */
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2 -> transform.scale(-1, 1);
+            case 3 -> transform.rotate(Math.PI);
+            case 4 -> transform.scale(1, -1);
+            case 5 -> {
+                transform.rotate(Math.PI / 2);
+                transform.scale(1, -1);
+            }
+            case 6 -> transform.rotate(Math.PI / 2);
+            case 7 -> {
+                transform.rotate(-Math.PI / 2);
+                transform.scale(1, -1);
+            }
+            default -> transform.rotate(-Math.PI / 2); // 8
+        }
+        // Translate so the transformed image lands in the positive quadrant
+        Rectangle2D bounds = transform.createTransformedShape(new Rectangle(0, 0, width, height)).getBounds2D();
+        AffineTransform placed = AffineTransform.getTranslateInstance(-bounds.getX(), -bounds.getY());
+        placed.concatenate(transform);
+
+        BufferedImage result = new BufferedImage(swap ? height : width, swap ? width : height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.drawImage(image, placed, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * Reads the orientation tag (0x0112) from a JPEG's EXIF segment; 1 (upright) if absent.
+     */
+    static int exifOrientation(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xFF;
+            int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+            if (marker == 0xDA || length < 2) {
+                return 1; // Image data starts: no EXIF before it
+            }
+            int start = pos + 4;
+            if (marker == 0xE1 && start + 14 <= jpeg.length && jpeg[start] == 'E' && jpeg[start + 1] == 'x'
+                    && jpeg[start + 2] == 'i' && jpeg[start + 3] == 'f') {
+                return tiffOrientation(jpeg, start + 6, Math.min(jpeg.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int tiffOrientation(byte[] data, int tiff, int end) {
+        boolean little = data[tiff] == 'I';
+        int ifd = tiff + readInt(data, tiff + 4, little);
+        if (ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(data, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readShort(data, entry, little) == 0x0112) {
+                return readShort(data, entry + 8, little);
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int pos, boolean little) {
+        int a = data[pos] & 0xFF;
+        int b = data[pos + 1] & 0xFF;
+        return little ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static int readInt(byte[] data, int pos, boolean little) {
+        int high = readShort(data, little ? pos + 2 : pos, little);
+        int low = readShort(data, little ? pos : pos + 2, little);
+        return (high << 16) | low;
+    }
+
+    public Map<String, Object> getStats() {
+        long in = bytesIn.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("processed", processed.get());
+        stats.put("passedThrough", passedThrough.get());
+        stats.put("fallbacks", fallbacks.get());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("sizeReduction", in == 0 ? 0.0 : 1.0 - (double) bytesOut.get() / in);
+        return stats;
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
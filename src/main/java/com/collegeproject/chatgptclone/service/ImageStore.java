@@ -0,0 +1,112 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Content-addressed store for chat images, backed by GridFS (bucket configured with
+ * spring.data.mongodb.gridfs.bucket).
+ * Images are keyed by the SHA-256 of their bytes, so a screenshot uploaded many times is
+ * stored once, and ChatMessage only keeps the key ({@code imageId}) instead of inline Base64.
+ */
+@Service
+public class ImageStore {
+
+    private final GridFsTemplate gridFsTemplate;
+
+    public ImageStore(GridFsTemplate gridFsTemplate) {
+        this.gridFsTemplate = gridFsTemplate;
+    }
+
+    /**
+     * Decodes a Base64 upload and stores it.
+     *
+     * @return The content hash to keep on the message.
+     * @throws IllegalArgumentException if the data is not valid Base64.
+     */
+    public String storeBase64(String imageBase64) {
+        return store(ImageUpload.ofBase64(imageBase64));
+    }
+
+    /**
+     * Stores the bytes unless an image with the same content already exists.
+     *
+     * @return The SHA-256 hex digest of the bytes, used as the image id.
+     */
+    public String store(byte[] bytes) {
+        return store(ImageUpload.ofBytes(bytes));
+    }
+
+    /**
+     * Stores an upload unless an image with the same content already exists, streaming it
+     * into GridFS chunk by chunk (from its temp file if it was spooled to disk).
+     *
+     * @return The SHA-256 hex digest of the content, used as the image id.
+     * @throws UncheckedIOException if the upload can't be read.
+     */
+    public String store(ImageUpload upload) {
+        String hash = upload.sha256();
+        if (!exists(hash)) {
+            // Two concurrent first uploads may both write; reads pick either copy, the content is identical
+            Document metadata = new Document("size", upload.size());
+            try (InputStream content = upload.openStream()) {
+                gridFsTemplate.store(content, hash, detectContentType(upload.head()).toString(), metadata);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read upload " + hash, e);
+            }
+            System.out.println("Stored new image " + hash + " (" + upload.size() + " bytes)");
+        }
+        return hash;
+    }
+
+    public boolean exists(String hash) {
+        return gridFsTemplate.findOne(query(where("filename").is(hash))) != null;
+    }
+
+    /**
+     * Opens an image for streaming.
+     */
+    public Optional<GridFsResource> load(String hash) {
+        GridFSFile file = gridFsTemplate.findOne(query(where("filename").is(hash)));
+        return Optional.ofNullable(file).map(gridFsTemplate::getResource);
+    }
+
+    /**
+     * Uploads usually arrive as bare Base64 without a data-URL prefix, so sniff the magic bytes.
+     */
+    public static MediaType detectContentType(byte[] bytes) {
+        if (bytes.length > 3 && (bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G') {
+            return MediaType.IMAGE_PNG;
+        }
+        if (bytes.length > 2 && bytes[0] == 'G' && bytes[1] == 'I' && bytes[2] == 'F') {
+            return MediaType.IMAGE_GIF;
+        }
+        if (bytes.length > 11 && bytes[8] == 'W' && bytes[9] == 'E' && bytes[10] == 'B' && bytes[11] == 'P') {
+            return MediaType.parseMediaType("image/webp");
+        }
+        return MediaType.IMAGE_JPEG;
+    }
+
+    public static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * An uploaded image, held in memory when small and in a temp file otherwise, so a multipart
+ * upload goes to the ImageStore and the LLM without ever existing as a Base64 String or one
+ * big byte[]:
+ * - {@link #fromStream} copies the upload through a fixed buffer, hashing it on the way
+ *   (the SHA-256 is the ImageStore key) and keeping the first bytes for format sniffing
+ *   and EXIF parsing
+ * - serialized by Jackson as a Base64 string that is encoded chunk by chunk from the
+ *   underlying stream
+ * Closing it deletes the temp file.
+ */
+@JsonSerialize(using = ImageUpload.Base64Serializer.class)
+public final class ImageUpload implements AutoCloseable {
+
+    // Enough for the magic bytes and the EXIF segment (at most 64 KB) of a JPEG
+    private static final int HEAD_SIZE = 64 * 1024 + 16;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final byte[] bytes; // null when the upload is on disk
+    private final Path file;
+    private final long size;
+    private final String sha256;
+    private final byte[] head;
+
+    private ImageUpload(byte[] bytes, Path file, long size, String sha256, byte[] head) {
+        this.bytes = bytes;
+        this.file = file;
+        this.size = size;
+        this.sha256 = sha256;
+        this.head = head;
+    }
+
+    public static ImageUpload ofBytes(byte[] bytes) {
+        return new ImageUpload(bytes, null, bytes.length, ImageStore.sha256(bytes),
+                bytes.length <= HEAD_SIZE ? bytes : Arrays.copyOf(bytes, HEAD_SIZE));
+    }
+
+    /**
+     * Decodes a Base64 upload (the JSON endpoints).
+     *
+     * @return null if there is no image.
+     * @throws IllegalArgumentException if the data is not valid Base64.
+     */
+    public static ImageUpload ofBase64(String imageBase64) {
+        if (imageBase64 == null || imageBase64.isEmpty()) {
+            return null;
+        }
+        return ofBytes(Base64.getMimeDecoder().decode(imageBase64));
+    }
+
+    /**
+     * Reads an upload to the end: uploads up to {@code memoryThreshold} bytes stay in memory,
+     * larger ones are copied to a temp file. Does not close {@code in}.
+     */
+    public static ImageUpload fromStream(InputStream in, long memoryThreshold) throws IOException {
+        MessageDigest digest = newDigest();
+        DigestInputStream hashing = new DigestInputStream(in, digest);
+        ByteArrayOutputStream memory = new ByteArrayOutputStream((int) Math.min(memoryThreshold, BUFFER_SIZE));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = hashing.read(buffer)) != -1) {
+            memory.write(buffer, 0, read);
+            if (memory.size() > memoryThreshold) {
+                return spool(memory.toByteArray(), hashing, digest, buffer);
+            }
+        }
+        byte[] bytes = memory.toByteArray();
+        return new ImageUpload(bytes, null, bytes.length, HexFormat.of().formatHex(digest.digest()),
+                bytes.length <= HEAD_SIZE ? bytes : Arrays.copyOf(bytes, HEAD_SIZE));
+    }
+
+    private static ImageUpload spool(byte[] start, InputStream rest, MessageDigest digest, byte[] buffer)
+            throws IOException {
+        Path file = Files.createTempFile("chat-upload-", ".img");
+        try {
+            long size = start.length;
+            try (OutputStream out = Files.newOutputStream(file)) {
+                out.write(start);
+                int read;
+                while ((read = rest.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+            return new ImageUpload(null, file, size, HexFormat.of().formatHex(digest.digest()),
+                    Arrays.copyOf(start, Math.min(start.length, HEAD_SIZE)));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * SHA-256 hex digest of the content, used as the image id.
+     */
+    public String sha256() {
+        return sha256;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * The first bytes of the content (all of it for small uploads).
+     */
+    public byte[] head() {
+        return head;
+    }
+
+    public boolean isOnDisk() {
+        return file != null;
+    }
+
+    public InputStream openStream() throws IOException {
+        return file != null ? Files.newInputStream(file) : new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * Random access for ImageIO; on disk, the decoder reads the file directly instead of
+     * caching the stream.
+     */
+    public ImageInputStream openImageInputStream() throws IOException {
+        return file != null ? new FileImageInputStream(file.toFile())
+                : ImageIO.createImageInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.out.println("Could not delete upload " + file + ": " + e);
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Writes the content as a Base64 string, streaming from memory or the temp file.
+     */
+    public static class Base64Serializer extends StdSerializer<ImageUpload> {
+
+        public Base64Serializer() {
+            super(ImageUpload.class);
+        }
+
+        @Override
+        public void serialize(ImageUpload upload, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (upload.bytes != null) {
+                gen.writeBinary(upload.bytes);
+                return;
+            }
+            try (InputStream in = upload.openStream()) {
+                gen.writeBinary(in, (int) upload.size);
+            }
+        }
+    }
+}
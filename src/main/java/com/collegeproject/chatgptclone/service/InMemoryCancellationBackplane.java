@@ -0,0 +1,47 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.service.CancellationBackplane.RequestKey;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Backplane for a single instance: nothing to share with, so publishing only reaches other
+ * registries in the same JVM (the tests use this to run several "nodes" side by side).
+ */
+public class InMemoryCancellationBackplane implements CancellationBackplane {
+
+    private final Map<String, Consumer<RequestKey>> listeners = new ConcurrentHashMap<>(); // nodeId -> listener
+    private final Map<RequestKey, String> owners = new ConcurrentHashMap<>(); // request -> nodeId
+
+    @Override
+    public void subscribe(String nodeId, Consumer<RequestKey> listener) {
+        listeners.put(nodeId, listener);
+    }
+
+    @Override
+    public void publish(String nodeId, RequestKey request) {
+        listeners.forEach((node, listener) -> {
+            if (!node.equals(nodeId)) {
+                listener.accept(request);
+            }
+        });
+    }
+
+    @Override
+    public void claim(String nodeId, RequestKey request) {
+        owners.put(request, nodeId);
+    }
+
+    @Override
+    public void release(String nodeId, RequestKey request) {
+        owners.remove(request, nodeId);
+    }
+
+    @Override
+    public Optional<String> findOwner(RequestKey request) {
+        return Optional.ofNullable(owners.get(request));
+    }
+}
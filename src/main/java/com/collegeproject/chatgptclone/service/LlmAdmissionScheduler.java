@@ -0,0 +1,201 @@
+package com.collegeproject.chatgptclone.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission layer in front of the LLM backend (a single Ollama instance).
+ * - At most {@code llm.admission.max-concurrent} inferences run at the same time.
+ * - Waiting requests are queued per user and served round-robin, so one user spamming
+ *   "create quiz" only delays their own requests.
+ * - The queue is bounded (globally and per user); when it is full, {@link #enqueue} fails
+ *   fast with {@link AdmissionRejectedException} instead of queueing without limit.
+ */
+@Component
+public class LlmAdmissionScheduler {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final int maxQueuedPerUser;
+
+    // Guarded by "this". Insertion order of the map = round-robin order of users.
+    private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+    private int active;
+    private int queued;
+
+    // Statistics (guarded by "this")
+    private long admittedCount;
+    private long rejectedCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private double avgServiceSeconds = 10.0; // EWMA of how long a permit is held; seeded with a typical inference
+
+    public LlmAdmissionScheduler(@Value("${llm.admission.max-concurrent:2}") int maxConcurrent,
+            @Value("${llm.admission.max-queued:100}") int maxQueued,
+            @Value("${llm.admission.max-queued-per-user:5}") int maxQueuedPerUser) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxQueuedPerUser = Math.max(1, maxQueuedPerUser);
+    }
+
+    /**
+     * Reserves a place for {@code userId}. The returned future completes with a {@link Permit}
+     * once an LLM slot is free (immediately if one is free now). Cancelling the future
+     * removes the request from the queue. The permit MUST be closed after the LLM call.
+     *
+     * @throws AdmissionRejectedException if the global or the user's queue is full.
+     */
+    public synchronized CompletableFuture<Permit> enqueue(String userId) {
+        Waiter waiter = new Waiter(userId);
+        if (active < maxConcurrent && queued == 0) {
+            grant(waiter);
+            return waiter.future;
+        }
+
+        ArrayDeque<Waiter> userQueue = queues.get(userId);
+        int userQueued = userQueue == null ? 0 : userQueue.size();
+        if (queued >= maxQueued || userQueued >= maxQueuedPerUser) {
+            rejectedCount++;
+            throw new AdmissionRejectedException(estimateRetryAfterSeconds(), queued >= maxQueued
+                    ? "The AI service is busy. Please try again shortly."
+                    : "You already have " + userQueued + " questions waiting. Please wait for them to finish.");
+        }
+
+        if (userQueue == null) {
+            userQueue = new ArrayDeque<>();
+            queues.put(userId, userQueue);
+        }
+        userQueue.addLast(waiter);
+        queued++;
+        // If the caller gives up while still queued, drop the waiter so it doesn't hold a place
+        waiter.future.whenComplete((permit, error) -> {
+            if (waiter.future.isCancelled()) {
+                removeWaiter(waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    /**
+     * Snapshot of the scheduler state, used to size hardware.
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("active", active);
+        stats.put("queued", queued);
+        stats.put("queuedUsers", queues.size());
+        stats.put("maxQueued", maxQueued);
+        stats.put("admitted", admittedCount);
+        stats.put("rejected", rejectedCount);
+        stats.put("avgWaitMs", admittedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / admittedCount));
+        stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        stats.put("avgServiceMs", Math.round(avgServiceSeconds * 1000));
+        return stats;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queued;
+    }
+
+    public synchronized int getActive() {
+        return active;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private synchronized void removeWaiter(Waiter waiter) {
+        ArrayDeque<Waiter> userQueue = queues.get(waiter.userId);
+        if (userQueue != null && userQueue.remove(waiter)) {
+            queued--;
+            if (userQueue.isEmpty()) {
+                queues.remove(waiter.userId);
+            }
+        }
+    }
+
+    private synchronized void release(Permit permit) {
+        active--;
+        double heldSeconds = (System.nanoTime() - permit.grantedAt) / 1e9;
+        avgServiceSeconds = 0.8 * avgServiceSeconds + 0.2 * heldSeconds;
+        dispatch();
+    }
+
+    /**
+     * Hands free slots to waiting users in round-robin order: take the first user,
+     * grant their oldest request, then move them to the back of the rotation.
+     */
+    private void dispatch() {
+        while (active < maxConcurrent && queued > 0) {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> it = queues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> next = it.next();
+            it.remove();
+            ArrayDeque<Waiter> userQueue = next.getValue();
+            Waiter waiter = userQueue.pollFirst();
+            queued--;
+            if (!userQueue.isEmpty()) {
+                queues.put(next.getKey(), userQueue); // re-insert at the tail
+            }
+            grant(waiter);
+        }
+    }
+
+    private void grant(Waiter waiter) {
+        active++;
+        Permit permit = new Permit();
+        if (!waiter.future.complete(permit)) {
+            active--; // Cancelled concurrently; the slot goes to the next waiter
+            return;
+        }
+        long waited = permit.grantedAt - waiter.enqueuedAt;
+        admittedCount++;
+        totalWaitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+    }
+
+    /**
+     * Rough time until a newly queued request would be served.
+     */
+    private long estimateRetryAfterSeconds() {
+        double seconds = avgServiceSeconds * (queued + 1) / maxConcurrent;
+        return Math.max(1, (long) Math.ceil(seconds));
+    }
+
+    private static final class Waiter {
+        private final String userId;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        private Waiter(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * One LLM slot. Closing it (idempotent) lets the next queued request in.
+     */
+    public final class Permit implements AutoCloseable {
+        private final long grantedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(this);
+            }
+        }
+    }
+}
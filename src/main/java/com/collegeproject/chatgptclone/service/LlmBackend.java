@@ -0,0 +1,173 @@
+package com.collegeproject.chatgptclone.service;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One Python LLM service instance, with its outstanding-request count and circuit breaker:
+ * - CLOSED: requests flow; {@code failureThreshold} failures in a row (connection errors,
+ *   HTTP 5xx) or a failed health check open the circuit.
+ * - OPEN: the backend is skipped, so requests fail over or fail fast instead of waiting
+ *   for a dead node to time out.
+ * - HALF_OPEN: after {@code openDuration} a single trial request is let through; its
+ *   outcome closes or re-opens the circuit. A passing health check closes it directly.
+ * Times are System.nanoTime() values passed in by the caller.
+ */
+public final class LlmBackend {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final URI baseUri;
+    private final URI predictUri;
+    private final URI embedUri;
+    private final URI reloadDocsUri;
+    private final URI healthUri;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    // Circuit breaker, guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+
+    public LlmBackend(String baseUrl, int failureThreshold, long openNanos) {
+        String base = baseUrl.trim().endsWith("/") ? baseUrl.trim().substring(0, baseUrl.trim().length() - 1)
+                : baseUrl.trim();
+        this.baseUri = URI.create(base);
+        this.predictUri = URI.create(base + "/predict");
+        this.embedUri = URI.create(base + "/embed");
+        this.reloadDocsUri = URI.create(base + "/reload-docs");
+        this.healthUri = URI.create(base + "/health");
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * Whether a request could be sent now (closed, or open long enough for a trial).
+     */
+    synchronized boolean isAvailable(long now) {
+        return state == State.CLOSED || (state == State.OPEN && now - openUntil >= 0);
+    }
+
+    /**
+     * Counts a request as outstanding if the circuit lets it through. Must be followed by {@link #release}.
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (state == State.HALF_OPEN) {
+            return false; // The trial request is still running
+        }
+        if (state == State.OPEN) {
+            if (now - openUntil < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        outstanding.incrementAndGet();
+        requests.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Ends an acquired request.
+     *
+     * @param success true/false to feed the circuit breaker, null if the outcome says nothing
+     *                about the backend (the request was cancelled).
+     */
+    void release(Boolean success, long now) {
+        outstanding.decrementAndGet();
+        if (success == null) {
+            synchronized (this) {
+                if (state == State.HALF_OPEN) {
+                    state = State.OPEN; // Cancelled trial: allow another one right away
+                }
+            }
+        } else if (success) {
+            recordSuccess();
+        } else {
+            recordFailure(now);
+        }
+    }
+
+    private synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            System.out.println("LLM backend " + baseUri + " is back (circuit closed)");
+        }
+    }
+
+    private synchronized void recordFailure(long now) {
+        failures.incrementAndGet();
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            trip(now, consecutiveFailures + " failure(s) in a row");
+        }
+    }
+
+    synchronized void healthCheckPassed() {
+        if (state != State.CLOSED) {
+            recordSuccess();
+        }
+    }
+
+    synchronized void healthCheckFailed(long now, String reason) {
+        if (state == State.CLOSED) {
+            trip(now, "health check failed: " + reason);
+        } else if (state == State.OPEN) {
+            openUntil = now + openNanos; // Still down: keep requests away
+        }
+    }
+
+    private void trip(long now, String reason) {
+        state = State.OPEN;
+        openUntil = now + openNanos;
+        System.out.println("LLM backend " + baseUri + " unavailable, circuit open for "
+                + TimeUnit.NANOSECONDS.toSeconds(openNanos) + " s (" + reason + ")");
+    }
+
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    URI predictUri() {
+        return predictUri;
+    }
+
+    URI embedUri() {
+        return embedUri;
+    }
+
+    URI reloadDocsUri() {
+        return reloadDocsUri;
+    }
+
+    URI healthUri() {
+        return healthUri;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("url", baseUri.toString());
+        stats.put("state", getState());
+        stats.put("outstanding", outstanding.get());
+        stats.put("requests", requests.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+}
@@ -0,0 +1,105 @@
+package com.collegeproject.chatgptclone.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the backend for each LLM request among those whose circuit lets requests through:
+ * - the one with the fewest outstanding requests (ties broken at random), so a slow or
+ *   busy node gets less traffic without any weights to tune;
+ * - with sticky users, the user's "home" backend instead (rendezvous hashing over the
+ *   available backends, so a node going down only moves its own users), as long as it has
+ *   at most {@code maxImbalance} more outstanding requests than the least busy one.
+ *   Keeping a user on one Ollama instance lets it reuse the cached conversation prefix.
+ */
+final class LlmBackendPool {
+
+    private final List<LlmBackend> backends;
+    private final boolean sticky;
+    private final int maxImbalance;
+
+    LlmBackendPool(List<LlmBackend> backends, boolean sticky, int maxImbalance) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one LLM backend URL is required");
+        }
+        this.backends = List.copyOf(backends);
+        this.sticky = sticky;
+        this.maxImbalance = maxImbalance;
+    }
+
+    /**
+     * Chooses a backend and counts the request as outstanding on it.
+     *
+     * @param affinityKey The user ID (for sticky routing), or null.
+     * @param exclude     A backend that just failed this request, or null.
+     * @return The backend, or null if every circuit is open.
+     */
+    LlmBackend acquire(String affinityKey, LlmBackend exclude) {
+        long now = System.nanoTime();
+        List<LlmBackend> candidates = new ArrayList<>(backends.size());
+        for (LlmBackend backend : backends) {
+            if (backend != exclude && backend.isAvailable(now)) {
+                candidates.add(backend);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            LlmBackend chosen = select(candidates, affinityKey);
+            if (chosen.tryAcquire(now)) {
+                return chosen;
+            }
+            candidates.remove(chosen); // Another request took its half-open trial
+        }
+        return null;
+    }
+
+    private LlmBackend select(List<LlmBackend> candidates, String affinityKey) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LlmBackend least = null;
+        int leastOutstanding = Integer.MAX_VALUE;
+        int ties = 0;
+        for (LlmBackend backend : candidates) {
+            int outstanding = backend.getOutstanding();
+            if (outstanding < leastOutstanding) {
+                least = backend;
+                leastOutstanding = outstanding;
+                ties = 1;
+            } else if (outstanding == leastOutstanding && random.nextInt(++ties) == 0) {
+                least = backend; // Each tied backend is kept with probability 1/ties
+            }
+        }
+        if (sticky && affinityKey != null) {
+            LlmBackend home = home(candidates, affinityKey);
+            if (home.getOutstanding() <= leastOutstanding + maxImbalance) {
+                return home;
+            }
+        }
+        return least;
+    }
+
+    /**
+     * Rendezvous (highest random weight) hashing: the backend with the highest hash of (key, backend).
+     */
+    private static LlmBackend home(List<LlmBackend> candidates, String affinityKey) {
+        LlmBackend home = null;
+        long best = Long.MIN_VALUE;
+        for (LlmBackend backend : candidates) {
+            long weight = mix(affinityKey.hashCode() * 0x9E3779B97F4A7C15L + backend.getBaseUri().hashCode());
+            if (home == null || weight > best) {
+                home = backend;
+                best = weight;
+            }
+        }
+        return home;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    List<LlmBackend> backends() {
+        return backends;
+    }
+}
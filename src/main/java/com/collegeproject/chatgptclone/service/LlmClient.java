@@ -0,0 +1,546 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * HTTP client for the Python LLM Service (Flask + Ollama/LLaVA).
+ * Replaces the bare RestTemplate that ChatService used to create:
+ * - one shared java.net.http.HttpClient, so keep-alive connections are pooled and reused
+ * - configurable connect and read timeouts (llm.service.* in application.properties); for
+ *   streamed replies the read timeout also bounds the wait for each next line
+ * - non-blocking sends whose callbacks run on virtual threads, so a slow inference
+ *   never pins a platform thread
+ * - any number of service instances (comma-separated base URLs), balanced by
+ *   {@link LlmBackendPool} with a circuit breaker per instance ({@link LlmBackend}) fed by
+ *   request outcomes and periodic GET /health checks. A request that can't connect is
+ *   retried once on another instance; with every circuit open, calls fail immediately.
+ * - request bodies holding an {@link ImageUpload} that was spooled to disk are serialized to
+ *   a temp file (Jackson encodes the Base64 chunk by chunk) and sent from there, so a large
+ *   image never sits in memory as one String or byte[].
+ */
+@Component
+public class LlmClient {
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final LlmBackendPool pool;
+    private final Duration readTimeout;
+    private final Duration healthCheckInterval;
+    private final Duration healthCheckTimeout;
+    private final ScheduledExecutorService streamWatchdog; // Idle deadlines of streamed replies
+    private ScheduledExecutorService healthChecker;
+
+    public LlmClient(ObjectMapper objectMapper,
+            @Value("${llm.service.base-url:http://127.0.0.1:5000}") String baseUrls,
+            @Value("${llm.service.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${llm.service.read-timeout:300s}") Duration readTimeout,
+            @Value("${llm.routing.sticky-users:false}") boolean stickyUsers,
+            @Value("${llm.routing.sticky-max-imbalance:2}") int stickyMaxImbalance,
+            @Value("${llm.circuit-breaker.failure-threshold:3}") int failureThreshold,
+            @Value("${llm.circuit-breaker.open-duration:30s}") Duration openDuration,
+            @Value("${llm.health-check.interval:10s}") Duration healthCheckInterval,
+            @Value("${llm.health-check.timeout:2s}") Duration healthCheckTimeout) {
+        this.objectMapper = objectMapper;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1) // Flask speaks HTTP/1.1; skip the h2c upgrade attempt
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+        this.pool = new LlmBackendPool(Arrays.stream(baseUrls.split(","))
+                .filter(url -> !url.isBlank())
+                .map(url -> new LlmBackend(url, failureThreshold, openDuration.toNanos()))
+                .toList(), stickyUsers, stickyMaxImbalance);
+        this.readTimeout = readTimeout;
+        this.healthCheckInterval = healthCheckInterval;
+        this.healthCheckTimeout = healthCheckTimeout;
+        this.streamWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llm-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        System.out.println("LLM client configured for " + pool.backends().stream().map(LlmBackend::getBaseUri).toList()
+                + " (connect " + connectTimeout + ", read " + readTimeout
+                + (stickyUsers ? ", sticky users" : "") + ")");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startHealthChecks() {
+        if (healthCheckInterval.isZero() || healthCheckInterval.isNegative()) {
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llm-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Probes every backend; any answer below 500 counts as alive (older services have no /health route).
+     */
+    private void checkHealth() {
+        for (LlmBackend backend : pool.backends()) {
+            HttpRequest request = HttpRequest.newBuilder(backend.healthUri()).timeout(healthCheckTimeout).GET().build();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (error != null) {
+                    backend.healthCheckFailed(System.nanoTime(), String.valueOf(unwrap(error)));
+                } else if (response.statusCode() >= 500) {
+                    backend.healthCheckFailed(System.nanoTime(), "HTTP " + response.statusCode());
+                } else {
+                    backend.healthCheckPassed();
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends a request body to /predict and completes with the "response" field of the reply.
+     * Completes exceptionally with {@link LlmServiceException} on HTTP errors or bad payloads.
+     * Cancelling the returned future aborts the HTTP exchange, so the Python side sees the
+     * connection drop instead of the result being computed and thrown away.
+     *
+     * @param affinityKey The user ID, for sticky routing (may be null).
+     */
+    public CompletableFuture<String> predict(Map<String, Object> requestBody, String affinityKey) {
+        Payload payload = payload(requestBody);
+        CompletableFuture<HttpResponse<byte[]>> exchange = sendBuffered(affinityKey,
+                backend -> jsonPost(backend.predictUri(), payload.publisher()));
+        exchange.whenComplete((response, error) -> payload.close());
+        CompletableFuture<String> result = exchange.thenApply(response -> {
+            if (response.statusCode() >= 400) {
+                throw new LlmServiceException("LLM service returned HTTP " + response.statusCode());
+            }
+            try {
+                JsonNode body = objectMapper.readTree(response.body());
+                if (body == null || !body.hasNonNull("response")) {
+                    return null;
+                }
+                return body.get("response").asText();
+            } catch (IOException e) {
+                throw new LlmServiceException("LLM service returned invalid JSON", e);
+            }
+        });
+        // Dependent stages don't propagate cancel upstream, so forward it by hand
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sends a streaming request ({"stream": true}) and forwards every token to {@code onToken}
+     * as the NDJSON lines arrive. Blocks the calling (virtual) thread until the stream ends.
+     * Closing the body early (an exception from {@code onToken}, or the abort action handed to
+     * {@code registerAbort} being run from another thread) closes the connection, which tells
+     * the Python side to stop generating.
+     * The backend counts the request as outstanding until the stream ends.
+     * The request timeout only covers the wait for the response headers; after that, a stream
+     * that sends no line for {@code llm.service.read-timeout} is closed and fails with
+     * {@link LlmServiceException}, so a hung backend can't hold the thread and its LLM slot.
+     *
+     * @param affinityKey   The user ID, for sticky routing (may be null).
+     * @param registerAbort Receives actions that abort the call; typically InFlightRequest::onCancel.
+     * @return An error message sent by the service, or null if the stream finished normally.
+     */
+    public String predictStream(Map<String, Object> requestBody, String affinityKey, Consumer<String> onToken,
+            Consumer<Runnable> registerAbort) throws Exception {
+        AtomicBoolean aborted = new AtomicBoolean();
+        Routed<InputStream> routed;
+        try (Payload payload = payload(requestBody)) {
+            CompletableFuture<Routed<InputStream>> exchange = send(affinityKey,
+                    backend -> jsonPost(backend.predictUri(), payload.publisher()),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            registerAbort.accept(() -> {
+                aborted.set(true);
+                exchange.cancel(true);
+            });
+            routed = exchange.get(); // The request body has been sent once the response starts
+        }
+        HttpResponse<InputStream> response = routed.response();
+
+        InputStream body = response.body();
+        // Closing the raw stream (not the reader) is safe from another thread and wakes up a blocked read
+        registerAbort.accept(() -> {
+            aborted.set(true);
+            closeQuietly(body);
+        });
+        IdleDeadline deadline = new IdleDeadline(() -> closeQuietly(body));
+        Boolean healthy = null; // Unknown if the stream is aborted or the client goes away
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (response.statusCode() >= 400) {
+                healthy = response.statusCode() < 500;
+                throw new LlmServiceException("LLM service returned HTTP " + response.statusCode());
+            }
+            while (true) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    if (deadline.expired) {
+                        healthy = false;
+                        throw new LlmServiceException("LLM service sent nothing for " + readTimeout, e);
+                    }
+                    if (!aborted.get()) {
+                        healthy = false; // The backend broke off the stream
+                    }
+                    throw e;
+                }
+                deadline.touch();
+                if (line == null) {
+                    healthy = true;
+                    return null;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode chunk;
+                try {
+                    chunk = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    healthy = false;
+                    throw e;
+                }
+                if (chunk.hasNonNull("error")) {
+                    healthy = true;
+                    return chunk.get("error").asText();
+                }
+                if (chunk.path("done").asBoolean(false)) {
+                    healthy = true;
+                    return null;
+                }
+                onToken.accept(chunk.path("token").asText(""));
+            }
+        } finally {
+            deadline.stop();
+            routed.backend().release(healthy, System.nanoTime());
+        }
+    }
+
+    /**
+     * Runs {@code onExpiry} once no {@link #touch} came for the read timeout. One check per
+     * stream that re-arms itself for the remaining time, rather than a timer per token.
+     */
+    private final class IdleDeadline implements Runnable {
+        private final Runnable onExpiry;
+        private volatile long lastActivity = System.nanoTime();
+        private volatile ScheduledFuture<?> check;
+        private volatile boolean stopped;
+        private volatile boolean expired;
+
+        private IdleDeadline(Runnable onExpiry) {
+            this.onExpiry = onExpiry;
+            schedule(readTimeout.toNanos());
+        }
+
+        void touch() {
+            lastActivity = System.nanoTime();
+        }
+
+        void stop() {
+            stopped = true;
+            ScheduledFuture<?> current = check;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            long remaining = readTimeout.toNanos() - (System.nanoTime() - lastActivity);
+            if (remaining > 0) {
+                schedule(remaining);
+                return;
+            }
+            expired = true;
+            onExpiry.run();
+        }
+
+        private void schedule(long delayNanos) {
+            try {
+                check = streamWatchdog.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down: the client's connections are being closed anyway
+            }
+        }
+    }
+
+    /**
+     * Triggers /reload-docs (re-indexing of the RAG documents) on every backend and completes
+     * with their status text. Fails only if no backend could reload.
+     */
+    public CompletableFuture<String> reloadDocuments() {
+        List<LlmBackend> backends = pool.backends();
+        List<CompletableFuture<String>> reloads = new ArrayList<>(backends.size());
+        for (LlmBackend backend : backends) {
+            HttpRequest request = HttpRequest.newBuilder(backend.reloadDocsUri())
+                    .timeout(readTimeout)
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            reloads.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+                if (response.statusCode() >= 400) {
+                    throw new LlmServiceException("Document reload failed: HTTP " + response.statusCode()
+                            + " " + response.body());
+                }
+                return response.body();
+            }));
+        }
+        if (reloads.size() == 1) {
+            return reloads.get(0);
+        }
+        return CompletableFuture.allOf(reloads.stream()
+                        .map(reload -> reload.exceptionally(e -> null))
+                        .toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> {
+                    StringBuilder status = new StringBuilder();
+                    boolean anyReloaded = false;
+                    for (int i = 0; i < backends.size(); i++) {
+                        CompletableFuture<String> reload = reloads.get(i);
+                        String outcome;
+                        if (reload.isCompletedExceptionally()) {
+                            outcome = String.valueOf(unwrap(reload.exceptionNow()).getMessage());
+                        } else {
+                            outcome = reload.resultNow();
+                            anyReloaded = true;
+                        }
+                        status.append(backends.get(i).getBaseUri()).append(": ").append(outcome).append('\n');
+                    }
+                    if (!anyReloaded) {
+                        throw new LlmServiceException("Document reload failed on every backend:\n" + status);
+                    }
+                    return status.toString().trim();
+                });
+    }
+
+    /**
+     * Embeds texts with the service's sentence-transformer model (POST /embed).
+     *
+     * @return One vector per text, in order.
+     */
+    public CompletableFuture<float[][]> embed(List<String> texts) {
+        HttpRequest.BodyPublisher payload = HttpRequest.BodyPublishers.ofByteArray(serialize(Map.of("texts", texts)));
+        return sendBuffered(null, backend -> jsonPost(backend.embedUri(), payload)).thenApply(response -> {
+            if (response.statusCode() >= 400) {
+                throw new LlmServiceException("/embed returned HTTP " + response.statusCode());
+            }
+            JsonNode embeddings;
+            try {
+                embeddings = objectMapper.readTree(response.body()).path("embeddings");
+            } catch (IOException e) {
+                throw new LlmServiceException("/embed returned invalid JSON", e);
+            }
+            if (embeddings.size() != texts.size()) {
+                throw new LlmServiceException("Expected " + texts.size() + " embeddings, got " + embeddings.size());
+            }
+            float[][] vectors = new float[embeddings.size()][];
+            for (int i = 0; i < vectors.length; i++) {
+                JsonNode values = embeddings.get(i);
+                vectors[i] = new float[values.size()];
+                for (int j = 0; j < vectors[i].length; j++) {
+                    vectors[i][j] = (float) values.get(j).asDouble();
+                }
+            }
+            return vectors;
+        });
+    }
+
+    /**
+     * {@link #send} for responses read in full: the backend is released as soon as they arrive.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> sendBuffered(String affinityKey,
+            Function<LlmBackend, HttpRequest> request) {
+        CompletableFuture<Routed<byte[]>> exchange = send(affinityKey, request, HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<HttpResponse<byte[]>> result = exchange.thenApply(routed -> {
+            routed.backend().release(routed.response().statusCode() < 500, System.nanoTime());
+            return routed.response();
+        });
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sends a request to the backend picked by the pool. If it can't be reached, the request
+     * is sent once more to another backend. Cancelling the returned future aborts the exchange.
+     * On success the caller must {@link LlmBackend#release} the backend; failures release it here.
+     */
+    private <T> CompletableFuture<Routed<T>> send(String affinityKey, Function<LlmBackend, HttpRequest> request,
+            HttpResponse.BodyHandler<T> handler) {
+        CompletableFuture<Routed<T>> result = new CompletableFuture<>();
+        attempt(affinityKey, null, request, handler, result);
+        return result;
+    }
+
+    private <T> void attempt(String affinityKey, LlmBackend failed, Function<LlmBackend, HttpRequest> request,
+            HttpResponse.BodyHandler<T> handler, CompletableFuture<Routed<T>> result) {
+        LlmBackend backend = pool.acquire(affinityKey, failed);
+        if (backend == null) {
+            result.completeExceptionally(new LlmServiceException("No LLM backend available (all circuits open)"));
+            return;
+        }
+        CompletableFuture<HttpResponse<T>> call = httpClient.sendAsync(request.apply(backend), handler);
+        result.whenComplete((routed, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        call.whenComplete((response, error) -> {
+            if (error == null) {
+                if (!result.complete(new Routed<>(backend, response))) {
+                    backend.release(null, System.nanoTime()); // Cancelled as the response arrived
+                    if (response.body() instanceof InputStream body) {
+                        closeQuietly(body);
+                    }
+                }
+            } else if (result.isCancelled()) {
+                backend.release(null, System.nanoTime());
+            } else {
+                backend.release(false, System.nanoTime());
+                Throwable cause = unwrap(error);
+                if (failed == null && (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException)) {
+                    System.out.println("LLM backend " + backend.getBaseUri() + " unreachable (" + cause
+                            + "), trying another one");
+                    attempt(affinityKey, backend, request, handler, result);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            }
+        });
+    }
+
+    private HttpRequest jsonPost(URI uri, HttpRequest.BodyPublisher payload) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("Content-Type", "application/json")
+                .POST(payload)
+                .build();
+    }
+
+    /**
+     * Serializes a request body in memory, or into a temp file if it holds an image upload
+     * that is on disk. The publisher can be subscribed again for a failover attempt.
+     */
+    private Payload payload(Map<String, Object> requestBody) {
+        boolean spool = requestBody.values().stream()
+                .anyMatch(value -> value instanceof ImageUpload upload && upload.isOnDisk());
+        if (!spool) {
+            return new Payload(HttpRequest.BodyPublishers.ofByteArray(serialize(requestBody)), null);
+        }
+        Path file = null;
+        try {
+            file = Files.createTempFile("llm-request-", ".json");
+            objectMapper.writeValue(file.toFile(), requestBody);
+            return new Payload(HttpRequest.BodyPublishers.ofFile(file), file);
+        } catch (IOException e) {
+            new Payload(null, file).close();
+            throw new LlmServiceException("Could not serialize LLM request", e);
+        }
+    }
+
+    private byte[] serialize(Map<String, Object> requestBody) {
+        try {
+            return objectMapper.writeValueAsBytes(requestBody);
+        } catch (IOException e) {
+            throw new LlmServiceException("Could not serialize LLM request", e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // Already closed or broken; either way the exchange is over
+        }
+    }
+
+    public List<LlmBackend> getBackends() {
+        return pool.backends();
+    }
+
+    public List<Map<String, Object>> getBackendStats() {
+        return pool.backends().stream().map(LlmBackend::getStats).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        streamWatchdog.shutdownNow();
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * A request body and the temp file it is read from, if any (deleted on close).
+     */
+    private record Payload(HttpRequest.BodyPublisher publisher, Path file) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.out.println("Could not delete LLM request file " + file + ": " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A response and the backend that produced it.
+     */
+    private record Routed<T>(LlmBackend backend, HttpResponse<T> response) {
+    }
+}
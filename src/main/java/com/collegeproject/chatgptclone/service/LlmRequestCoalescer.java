@@ -0,0 +1,319 @@
+package com.collegeproject.chatgptclone.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Single-flight for LLM calls: when a class pastes the same question within seconds, the
+ * first request (the leader) calls the LLM and every identical request that arrives while
+ * that call is running (a follower) waits for its answer instead of queueing its own.
+ * - Identical means same normalized prompt (as in {@link LlmResponseCache}), image hash,
+ *   conversation history (hash) and document context, so nobody gets an answer generated
+ *   from someone else's conversation.
+ * - Streaming followers get the tokens produced so far in one piece, then the rest as they arrive.
+ *   The leader only queues tokens for them; each follower writes its own on its request thread
+ *   (in {@link Participant#await}), so a slow client never holds up the shared call or the others.
+ * - Cancellation is reference-counted: a participant that cancels only leaves the flight;
+ *   the shared call is aborted once every participant (leader included) has cancelled.
+ * Once the call completes its answer is in the response cache, so later requests hit that instead.
+ */
+@Component
+public class LlmRequestCoalescer {
+
+    private final boolean enabled;
+    private final int minPromptLength;
+    private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+    private final AtomicLong aborted = new AtomicLong();
+
+    public LlmRequestCoalescer(@Value("${llm.coalescing.enabled:true}") boolean enabled,
+            @Value("${llm.coalescing.min-prompt-length:12}") int minPromptLength) {
+        this.enabled = enabled;
+        this.minPromptLength = minPromptLength;
+    }
+
+    /**
+     * @param historyHash Hash of the conversation turns sent with the prompt, or null if none.
+     * @param context     The document context sent with the prompt (null: retrieved by the Python service).
+     * @return The key identical requests share, or null if this request must not be coalesced.
+     */
+    public Key keyFor(String prompt, String imageHash, String historyHash, String context) {
+        if (!enabled) {
+            return null;
+        }
+        String normalized = LlmResponseCache.normalize(prompt);
+        if (imageHash == null && normalized.length() < minPromptLength) {
+            return null;
+        }
+        return new Key(normalized, imageHash, historyHash, context);
+    }
+
+    /**
+     * Joins the flight for {@code key}, starting it if there is none. The leader must run the
+     * call (with {@link Participant#flight()} as its cancellation signal and
+     * {@link Participant#emit} for tokens) and then {@link Participant#complete} it; followers
+     * {@link Participant#await} the result.
+     *
+     * @param onToken Receives this participant's tokens, or null if it doesn't stream.
+     */
+    public Participant join(Key key, String requestId, Consumer<String> onToken) {
+        while (true) {
+            Flight flight = flights.computeIfAbsent(key, k -> new Flight(k, requestId));
+            Participant participant = flight.add(onToken);
+            if (participant != null) {
+                (participant.isLeader() ? leaders : followers).incrementAndGet();
+                return participant;
+            }
+            flights.remove(key, flight); // Aborted or finished in the meantime: start a new one
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("inFlight", flights.size());
+        stats.put("leaders", leaders.get());
+        stats.put("followers", followers.get());
+        stats.put("aborted", aborted.get());
+        return stats;
+    }
+
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    public long getFollowerCount() {
+        return followers.get();
+    }
+
+    public record Key(String prompt, String imageHash, String historyHash, String context) {
+    }
+
+    /**
+     * One shared LLM call and the requests waiting for it.
+     * The cancellation signal of the shared call: cancelled when the last participant leaves.
+     */
+    public final class Flight implements CancellationSignal {
+        private final Key key;
+        private final String leaderRequestId;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        // All guarded by this
+        private final StringBuilder tokens = new StringBuilder();
+        private final List<Participant> listeners = new ArrayList<>(); // Streaming followers
+        private final List<Runnable> abortActions = new ArrayList<>();
+        private int participants;
+        private boolean started;
+        private boolean cancelled;
+
+        private Flight(Key key, String leaderRequestId) {
+            this.key = key;
+            this.leaderRequestId = leaderRequestId;
+        }
+
+        /**
+         * @return The new participant (the first one leads), or null if the flight has ended.
+         */
+        private synchronized Participant add(Consumer<String> onToken) {
+            if (cancelled || result.isDone()) {
+                return null;
+            }
+            Participant participant = new Participant(this, !started, onToken);
+            started = true;
+            participants++;
+            if (onToken != null && !participant.leader) {
+                if (!tokens.isEmpty()) {
+                    participant.inbox.add(tokens.toString()); // Catch up on what was streamed so far
+                }
+                listeners.add(participant);
+            }
+            return participant;
+        }
+
+        /**
+         * Queues a token for every streaming follower; never blocks on a client.
+         */
+        private synchronized void emit(String token) {
+            tokens.append(token);
+            for (Participant listener : listeners) {
+                listener.inbox.add(token);
+            }
+        }
+
+        private void leave(Participant participant) {
+            List<Runnable> actions;
+            synchronized (this) {
+                listeners.remove(participant);
+                participants--;
+                if (participants > 0 || result.isDone() || cancelled) {
+                    return;
+                }
+                cancelled = true; // Nobody is waiting any more: abort the shared call
+                actions = new ArrayList<>(abortActions);
+                abortActions.clear();
+            }
+            flights.remove(key, this);
+            aborted.incrementAndGet();
+            actions.forEach(Runnable::run);
+        }
+
+        private void complete(String response, Throwable failure) {
+            flights.remove(key, this); // Later requests find the answer in the response cache
+            synchronized (this) {
+                listeners.clear();
+            }
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(response);
+            }
+        }
+
+        @Override
+        public String getRequestId() {
+            return leaderRequestId;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void onCancel(Runnable action) {
+            synchronized (this) {
+                if (!cancelled) {
+                    abortActions.add(action);
+                    return;
+                }
+            }
+            action.run();
+        }
+    }
+
+    /**
+     * One request's part in a flight. Closing it (or cancelling) leaves the flight.
+     */
+    public static final class Participant implements AutoCloseable {
+        private static final String END = new String("end"); // Compared by identity: no more tokens
+
+        private final Flight flight;
+        private final boolean leader;
+        private final Consumer<String> onToken;
+        private final CompletableFuture<String> answer = new CompletableFuture<>();
+        private final LinkedBlockingQueue<String> inbox = new LinkedBlockingQueue<>(); // Follower's tokens, then END
+        private volatile boolean receivedTokens;
+        private boolean left; // guarded by this
+
+        private Participant(Flight flight, boolean leader, Consumer<String> onToken) {
+            this.flight = flight;
+            this.leader = leader;
+            this.onToken = onToken;
+            flight.result.whenComplete((response, failure) -> {
+                inbox.add(END); // After the last token: the leader emits before it completes
+                if (failure != null) {
+                    answer.completeExceptionally(failure);
+                } else {
+                    answer.complete(response);
+                }
+            });
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * The shared call's cancellation signal (for the leader's LLM call).
+         */
+        public Flight flight() {
+            return flight;
+        }
+
+        /**
+         * Leader: passes a token to this participant's {@code onToken} and queues it for every
+         * streaming follower.
+         */
+        public void emit(String token) {
+            flight.emit(token);
+            if (onToken != null) {
+                deliver(token);
+            }
+        }
+
+        /**
+         * Leader: publishes the result to all participants.
+         *
+         * @param response The answer, or null if the leader failed without one.
+         */
+        public void complete(String response) {
+            flight.complete(response, response == null ? new LlmServiceException("Shared LLM call failed") : null);
+        }
+
+        /**
+         * Follower: waits for the leader's answer, passing the streamed tokens to {@code onToken}
+         * on the calling thread meanwhile.
+         *
+         * @throws java.util.concurrent.CancellationException if this participant was cancelled.
+         */
+        public String await() throws InterruptedException, ExecutionException {
+            if (onToken != null) {
+                for (String token = inbox.take(); token != END; token = inbox.take()) {
+                    deliver(token);
+                }
+            }
+            return answer.get();
+        }
+
+        /**
+         * Whether any token reached this participant's {@code onToken}.
+         */
+        public boolean receivedTokens() {
+            return receivedTokens;
+        }
+
+        /**
+         * Stops waiting and leaves the flight (aborting the call if nobody else is waiting).
+         */
+        public void cancel() {
+            answer.cancel(false);
+            inbox.add(END); // Wake up await()
+            close();
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (left) {
+                    return;
+                }
+                left = true;
+            }
+            flight.leave(this);
+        }
+
+        private void deliver(String token) {
+            if (answer.isCancelled()) {
+                return;
+            }
+            try {
+                onToken.accept(token);
+                receivedTokens = true;
+            } catch (RuntimeException e) {
+                // This client went away; the others keep receiving tokens
+            }
+        }
+    }
+}
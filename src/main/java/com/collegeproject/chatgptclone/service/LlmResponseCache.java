@@ -0,0 +1,174 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of LLM answers, so students asking the same question ("what is spring boot",
+ * the same assignment MCQ) don't each pay for a multi-second inference.
+ * - Key: normalized prompt (case, whitespace and punctuation folded) + image hash +
+ *   hash of the conversation history sent with it + document-corpus version. The history
+ *   is part of the answer's input, so only requests with the same earlier turns (typically
+ *   none: a first question) share an answer, and no user is served one built on another's chat.
+ * - Eviction: Caffeine's W-TinyLFU (frequency-aware, bounded by {@code llm.cache.max-entries}),
+ *   entries expire after {@code llm.cache.ttl}.
+ * - Reloading the RAG documents bumps the corpus version and clears the cache.
+ * Very short prompts ("why?", "explain more") are follow-ups whose answer depends on the
+ * conversation, so they are never cached.
+ */
+@Component
+public class LlmResponseCache {
+
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\p{P}\\p{S}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final boolean enabled;
+    private final int minPromptLength;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong corpusVersion = new AtomicLong();
+
+    public LlmResponseCache(@Value("${llm.cache.enabled:true}") boolean enabled,
+            @Value("${llm.cache.max-entries:5000}") long maxEntries,
+            @Value("${llm.cache.ttl:24h}") Duration ttl,
+            @Value("${llm.cache.min-prompt-length:12}") int minPromptLength) {
+        this.enabled = enabled;
+        this.minPromptLength = minPromptLength;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Cache key for a prompt, or null if this prompt should not be cached.
+     *
+     * @param imageHash   SHA-256 of the attached image (ImageStore id), or null.
+     * @param historyHash Hash of the conversation turns sent along with the prompt, or null if none.
+     */
+    public Key keyFor(String prompt, String imageHash, String historyHash) {
+        if (!enabled) {
+            return null;
+        }
+        String normalized = normalize(prompt);
+        if (imageHash == null && normalized.length() < minPromptLength) {
+            return null;
+        }
+        return new Key(normalized, imageHash, historyHash, corpusVersion.get());
+    }
+
+    public Optional<String> get(Key key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        entry.hits.incrementAndGet();
+        return Optional.of(entry.response);
+    }
+
+    public void put(Key key, String response) {
+        if (key != null && key.corpusVersion() == corpusVersion.get()) {
+            cache.put(key, new Entry(response));
+        }
+    }
+
+    /**
+     * The RAG documents changed: answers computed from the old corpus are no longer valid.
+     */
+    public void onCorpusReloaded() {
+        long version = corpusVersion.incrementAndGet();
+        cache.invalidateAll();
+        System.out.println("LLM response cache cleared (corpus version " + version + ")");
+    }
+
+    public long getCorpusVersion() {
+        return corpusVersion.get();
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Overall statistics plus the most frequently hit entries. The cache is shared by all users,
+     * so entries are identified by a hash of the prompt, never by its text.
+     */
+    public Map<String, Object> getStats(int topN) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        result.put("corpusVersion", corpusVersion.get());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+
+        List<Map<String, Object>> top = cache.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Key, Entry> e) -> e.getValue().hits.get()).reversed())
+                .limit(topN)
+                .map(e -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    String prompt = e.getKey().prompt();
+                    item.put("promptHash", ImageStore.sha256(prompt.getBytes(StandardCharsets.UTF_8)).substring(0, 16));
+                    item.put("promptLength", prompt.length());
+                    item.put("image", e.getKey().imageHash() != null);
+                    item.put("history", e.getKey().historyHash() != null);
+                    item.put("hits", e.getValue().hits.get());
+                    item.put("cachedAt", e.getValue().createdAt.toString());
+                    return item;
+                })
+                .toList();
+        result.put("topEntries", top);
+        return result;
+    }
+
+    /**
+     * Folds the differences that don't change the question: Unicode forms, case,
+     * punctuation and runs of whitespace.
+     */
+    static String normalize(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(prompt, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        text = PUNCTUATION.matcher(text).replaceAll(" ");
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    public record Key(String prompt, String imageHash, String historyHash, long corpusVersion) {
+    }
+
+    private static final class Entry {
+        private final String response;
+        private final Instant createdAt = Instant.now();
+        private final AtomicLong hits = new AtomicLong();
+
+        private Entry(String response) {
+            this.response = response;
+        }
+    }
+}
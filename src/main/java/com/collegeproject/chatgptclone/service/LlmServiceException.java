@@ -0,0 +1,15 @@
+package com.collegeproject.chatgptclone.service;
+
+/**
+ * Thrown when the Python LLM Service answers with an error status or an unusable payload.
+ */
+public class LlmServiceException extends RuntimeException {
+
+    public LlmServiceException(String message) {
+        super(message);
+    }
+
+    public LlmServiceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
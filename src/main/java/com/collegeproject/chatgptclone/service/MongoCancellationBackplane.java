@@ -0,0 +1,245 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.service.CancellationBackplane.RequestKey;
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Backplane for several instances sharing one MongoDB (no replica set needed):
+ * - cancels are appended to the capped collection chat_cancellations, which every node
+ *   follows with a tailable cursor, so a cancel reaches the other nodes within one round trip.
+ *   The collection is capped at {@code chat.cluster.mongo.cancel-log-size}, old cancels
+ *   simply roll off.
+ * - running requests are claimed in chat_inflight ({@code _id} = {user, request}). Claims of a
+ *   node that died expire after {@code chat.cluster.ownership-ttl} (TTL index).
+ * Both collections are set up by {@link #start} while the context starts, before anything can
+ * publish (an insert into a missing chat_cancellations would create it uncapped, and tailing
+ * it would then fail forever); startup fails if MongoDB is unreachable or the collection exists
+ * but isn't capped. The tailer then reconnects after errors, resuming after the last cancel it
+ * saw in the collection's insertion ($natural) order; while MongoDB is unreachable cancels
+ * only work on the node that receives them.
+ * Created by {@code CancellationBackplaneConfig} when {@code chat.cluster.backplane=mongo}.
+ */
+public class MongoCancellationBackplane implements CancellationBackplane {
+
+    static final String CANCEL_COLLECTION = "chat_cancellations";
+    static final String OWNER_COLLECTION = "chat_inflight";
+
+    private final MongoTemplate mongoTemplate;
+    private final long cancelLogBytes;
+    private final Duration ownershipTtl;
+    private final Duration retryInterval;
+    private final Map<String, Consumer<RequestKey>> listeners = new ConcurrentHashMap<>(); // nodeId -> listener
+    private Thread tailer;
+    private volatile boolean running = true;
+
+    public MongoCancellationBackplane(MongoTemplate mongoTemplate, DataSize cancelLogSize, Duration ownershipTtl,
+            Duration retryInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.cancelLogBytes = cancelLogSize.toBytes();
+        this.ownershipTtl = ownershipTtl;
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * Creates the collections and starts following the cancel log.
+     *
+     * @throws IllegalStateException if chat_cancellations exists but is not capped.
+     */
+    public synchronized void start() {
+        ensureCollections();
+        if (tailer == null && running) {
+            tailer = Thread.ofPlatform().daemon().name("chat-cancel-tailer").start(this::runTailer);
+            System.out.println("Cancellation backplane: following " + CANCEL_COLLECTION + " in MongoDB");
+        }
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<RequestKey> listener) {
+        listeners.put(nodeId, listener);
+    }
+
+    @Override
+    public void publish(String nodeId, RequestKey request) {
+        try {
+            mongoTemplate.getCollection(CANCEL_COLLECTION).insertOne(new Document("userId", request.userId())
+                    .append("requestId", request.requestId()).append("node", nodeId).append("at", new Date()));
+        } catch (RuntimeException e) {
+            System.out.println("Could not publish cancel for " + request.requestId() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void claim(String nodeId, RequestKey request) {
+        try {
+            mongoTemplate.getCollection(OWNER_COLLECTION).replaceOne(Filters.eq("_id", ownerId(request)),
+                    new Document("_id", ownerId(request)).append("node", nodeId).append("startedAt", new Date()),
+                    new ReplaceOptions().upsert(true));
+        } catch (RuntimeException e) {
+            System.out.println("Could not claim request " + request.requestId() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void release(String nodeId, RequestKey request) {
+        try {
+            mongoTemplate.getCollection(OWNER_COLLECTION)
+                    .deleteOne(Filters.and(Filters.eq("_id", ownerId(request)), Filters.eq("node", nodeId)));
+        } catch (RuntimeException e) {
+            System.out.println("Could not release request " + request.requestId() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<String> findOwner(RequestKey request) {
+        try {
+            Document owner = mongoTemplate.getCollection(OWNER_COLLECTION)
+                    .find(Filters.eq("_id", ownerId(request))).first();
+            return owner != null ? Optional.ofNullable(owner.getString("node")) : Optional.empty();
+        } catch (RuntimeException e) {
+            System.out.println("Could not look up request " + request.requestId() + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Embedded documents match field by field in order, so this is always built the same way
+    private static Document ownerId(RequestKey request) {
+        return new Document("user", request.userId()).append("request", request.requestId());
+    }
+
+    /**
+     * Follows the cancel log. The _ids are generated by the publishing nodes, so their order says
+     * nothing about insertion order; a reconnect instead reads the log from the start in $natural
+     * order (the order of a capped collection) and skips up to the last cancel it delivered.
+     */
+    private void runTailer() {
+        Object lastSeen = null;
+        boolean positioned = false;
+        while (running) {
+            try {
+                MongoCollection<Document> cancels = mongoTemplate.getCollection(CANCEL_COLLECTION);
+                if (!positioned) {
+                    // Only cancels published from now on; older ones are for requests long gone
+                    Document last = cancels.find().sort(new Document("$natural", -1)).limit(1).first();
+                    lastSeen = last != null ? last.get("_id") : null;
+                    positioned = true;
+                }
+                List<Document> skipped = new ArrayList<>(); // Read while looking for lastSeen
+                boolean caughtUp = lastSeen == null;
+                try (MongoCursor<Document> cursor = cancels.find().cursorType(CursorType.TailableAwait)
+                        .maxAwaitTime(1, TimeUnit.SECONDS).iterator()) {
+                    while (running) {
+                        Document cancel = cursor.tryNext();
+                        if (cancel != null) {
+                            if (caughtUp) {
+                                lastSeen = cancel.get("_id");
+                                deliver(cancel);
+                            } else if (cancel.get("_id").equals(lastSeen)) {
+                                caughtUp = true;
+                                skipped.clear();
+                            } else {
+                                skipped.add(cancel);
+                            }
+                            continue;
+                        }
+                        if (!caughtUp) {
+                            // lastSeen rolled off the capped log, and with it only older cancels:
+                            // everything still there is new
+                            caughtUp = true;
+                            for (Document missed : skipped) {
+                                lastSeen = missed.get("_id");
+                                deliver(missed);
+                            }
+                            skipped.clear();
+                        }
+                        if (cursor.getServerCursor() == null) {
+                            break; // Dead cursor (e.g. the collection was empty): open a new one
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (running) {
+                    System.out.println("Cancellation backplane: " + e.getMessage() + "; retrying in " + retryInterval);
+                }
+            }
+            sleep(retryInterval);
+        }
+    }
+
+    private void deliver(Document cancel) {
+        String userId = cancel.getString("userId");
+        String requestId = cancel.getString("requestId");
+        String origin = cancel.getString("node");
+        listeners.forEach((node, listener) -> {
+            if (userId != null && requestId != null && !node.equals(origin)) {
+                try {
+                    listener.accept(new RequestKey(userId, requestId));
+                } catch (RuntimeException e) {
+                    System.out.println("Cancel listener failed for " + requestId + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void ensureCollections() {
+        if (!mongoTemplate.collectionExists(CANCEL_COLLECTION)) {
+            try {
+                mongoTemplate.createCollection(CANCEL_COLLECTION, CollectionOptions.empty().capped().size(cancelLogBytes));
+            } catch (RuntimeException e) {
+                // Another node created it first
+                if (!mongoTemplate.collectionExists(CANCEL_COLLECTION)) {
+                    throw e;
+                }
+            }
+        }
+        Document info = mongoTemplate.getDb().listCollections().filter(Filters.eq("name", CANCEL_COLLECTION)).first();
+        Document options = info != null ? info.get("options", Document.class) : null;
+        if (options == null || !options.getBoolean("capped", false)) {
+            throw new IllegalStateException(CANCEL_COLLECTION + " exists but is not a capped collection, so it can't be"
+                    + " tailed; drop it (it only holds short-lived cancels) and restart");
+        }
+        mongoTemplate.getCollection(OWNER_COLLECTION).createIndex(Indexes.ascending("startedAt"),
+                new IndexOptions().expireAfter(ownershipTtl.toSeconds(), TimeUnit.SECONDS));
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (tailer != null) {
+            tailer.interrupt();
+            try {
+                tailer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
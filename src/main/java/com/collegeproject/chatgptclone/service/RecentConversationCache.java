@@ -0,0 +1,164 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps each active user's last few chat turns in memory, so the conversation context
+ * sent to the LLM doesn't cost a MongoDB round trip per message.
+ * - Every saved ChatMessage is {@link #record recorded} into the user's ring buffer
+ *   (capacity {@code chat.history.context-size}).
+ * - At most {@code chat.history.cache.max-users} buffers are kept; the least recently
+ *   used user is evicted first.
+ * - After an eviction or a restart the first read falls back to MongoDB and re-seeds the buffer.
+ */
+@Component
+public class RecentConversationCache {
+
+    private final ChatRepository chatRepository;
+    private final int contextSize;
+
+    // Access-ordered: iteration starts at the least recently used user. Guarded by "this".
+    private final LinkedHashMap<String, Conversation> conversations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RecentConversationCache(ChatRepository chatRepository,
+            @Value("${chat.history.context-size:5}") int contextSize,
+            @Value("${chat.history.cache.max-users:10000}") int maxUsers) {
+        this.chatRepository = chatRepository;
+        this.contextSize = Math.max(0, contextSize);
+        this.conversations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                if (size() > maxUsers) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Adds a message that was just saved to its user's buffer.
+     */
+    public synchronized void record(ChatMessage message) {
+        if (contextSize == 0) {
+            return;
+        }
+        // A user we haven't seen yet gets a partial buffer; the first read completes it from MongoDB
+        conversations.computeIfAbsent(message.getUserId(), userId -> new Conversation(contextSize))
+                .add(message);
+    }
+
+    /**
+     * The user's most recent messages, oldest first (at most {@code chat.history.context-size}).
+     */
+    public List<ChatMessage> getRecent(String userId) {
+        if (contextSize == 0) {
+            return Collections.emptyList();
+        }
+        synchronized (this) {
+            Conversation conversation = conversations.get(userId);
+            if (conversation != null && conversation.complete) {
+                hits.incrementAndGet();
+                return conversation.snapshot();
+            }
+        }
+
+        // Miss: load from MongoDB outside the lock, then merge with anything recorded meanwhile
+        misses.incrementAndGet();
+        List<ChatMessage> fromDb = chatRepository.findByUserId(userId,
+                PageRequest.of(0, contextSize, Sort.by(Sort.Direction.DESC, "timestamp")));
+        synchronized (this) {
+            Conversation conversation = conversations.computeIfAbsent(userId, id -> new Conversation(contextSize));
+            conversation.seed(fromDb);
+            return conversation.snapshot();
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", conversations.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Ring buffer of one user's latest messages.
+     */
+    private static final class Conversation {
+        private final int capacity;
+        private final ArrayDeque<ChatMessage> messages;
+        private boolean complete; // true once seeded from MongoDB
+
+        private Conversation(int capacity) {
+            this.capacity = capacity;
+            this.messages = new ArrayDeque<>(capacity);
+        }
+
+        private void add(ChatMessage message) {
+            if (messages.size() == capacity) {
+                messages.pollFirst();
+            }
+            messages.addLast(message);
+        }
+
+        /**
+         * Merges the newest messages from MongoDB (newest first) with those recorded in memory.
+         */
+        private void seed(List<ChatMessage> newestFirst) {
+            List<ChatMessage> merged = new ArrayList<>(newestFirst);
+            Set<String> knownIds = new HashSet<>();
+            newestFirst.forEach(m -> knownIds.add(m.getId()));
+            for (ChatMessage m : messages) {
+                if (m.getId() == null || !knownIds.contains(m.getId())) {
+                    merged.add(m);
+                }
+            }
+            merged.sort(Comparator.comparing(ChatMessage::getTimestamp));
+            messages.clear();
+            merged.subList(Math.max(0, merged.size() - capacity), merged.size()).forEach(messages::addLast);
+            complete = true;
+        }
+
+        private List<ChatMessage> snapshot() {
+            return new ArrayList<>(messages);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Short-lived cache of loaded users for the login provider, so repeated logins (and a class
+ * logging in at the same time) don't each query MongoDB.
+ * DaoAuthenticationProvider uses it through Spring Security's {@link UserCache} hook: on a
+ * password mismatch against a cached entry it reloads the user once, so a stale entry can
+ * cost a lookup but never lock anybody out.
+ * Entries are copies: Spring erases the credentials of the authenticated principal after
+ * login, which must not wipe the cached password hash.
+ */
+@Component
+public class UserDetailsCache implements UserCache {
+
+    private final Cache<String, UserDetails> cache;
+
+    public UserDetailsCache(@Value("${auth.user-cache.ttl:60s}") Duration ttl,
+            @Value("${auth.user-cache.max-entries:10000}") long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        UserDetails cached = cache.getIfPresent(username);
+        return cached != null ? User.withUserDetails(cached).build() : null;
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        cache.put(user.getUsername(), User.withUserDetails(user).build());
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        cache.invalidate(username);
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+}
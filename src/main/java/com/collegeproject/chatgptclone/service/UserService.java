@@ -1,7 +1,9 @@
 package com.collegeproject.chatgptclone.service;
 
+import com.collegeproject.chatgptclone.config.MongoIndexInitializer;
 import com.collegeproject.chatgptclone.model.User;
 import com.collegeproject.chatgptclone.repository.UserRepository;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -19,12 +21,15 @@ public class UserService implements UserDetailsService {
 
     private final UserRepository userRepository; // Make final for constructor injection
     private final PasswordEncoder passwordEncoder; // Make final for constructor injection
+    private final MongoIndexInitializer indexInitializer;
 
     // NEW: Constructor for dependency injection
     // Spring will automatically inject UserRepository and PasswordEncoder here
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+            MongoIndexInitializer indexInitializer) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.indexInitializer = indexInitializer;
     }
 
     /**
@@ -56,12 +61,18 @@ public class UserService implements UserDetailsService {
      * @return The saved User object, or null if username already exists.
      */
     public User registerNewUser(String username, String password) {
-        if (userRepository.existsByUsername(username)) {
+        // The unique index is created in the background after startup (and not at all if existing
+        // data has duplicates); until it is confirmed, check first so a username is never taken twice
+        if (!indexInitializer.isIndexed(User.class) && userRepository.existsByUsername(username)) {
             return null;
         }
-
         String encodedPassword = passwordEncoder.encode(password);
         User newUser = new User(username, encodedPassword, Collections.singleton("USER"));
-        return userRepository.save(newUser);
+        try {
+            // Once indexed, one round trip: the unique index rejects duplicates (also concurrent ones)
+            return userRepository.insert(newUser);
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,57 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class Bm25IndexTests {
+
+	@Test
+	void ranksExactTermMatchesFirst() {
+		List<String> docs = List.of(
+				"Spring Boot makes it easy to create stand-alone applications.",
+				"The ChatService class saves messages to MongoDB.",
+				"Option B) is correct because the repository extends MongoRepository.",
+				"Python runs the Flask service.");
+		Bm25Index index = Bm25Index.build(docs.size(), docs::get, 1.2f, 0.75f);
+
+		assertThat(index.search("which class saves messages? ChatService", 2).get(0).id()).isEqualTo(1);
+		assertThat(index.search("option b", 1).get(0).id()).isEqualTo(2);
+		assertThat(index.search("nothing matches here zzz", 3)).isEmpty();
+	}
+
+	@Test
+	void maxScoreMatchesExhaustiveScoring() {
+		// Zipf-like vocabulary, enough documents for several skip blocks per common term
+		Random random = new Random(11);
+		List<String> docs = new ArrayList<>();
+		for (int d = 0; d < 3000; d++) {
+			StringBuilder text = new StringBuilder();
+			int length = 5 + random.nextInt(60);
+			for (int w = 0; w < length; w++) {
+				text.append("w").append((int) Math.pow(random.nextDouble(), 3) * 500).append(' ');
+			}
+			docs.add(text.toString());
+		}
+		Bm25Index index = Bm25Index.build(docs.size(), docs::get, 1.2f, 0.75f);
+
+		for (int q = 0; q < 50; q++) {
+			String query = "w" + random.nextInt(5) + " w" + random.nextInt(50) + " w" + random.nextInt(500);
+			List<Bm25Index.Hit> hits = index.search(query, 10);
+			// k = all documents disables early termination
+			List<Bm25Index.Hit> all = index.search(query, docs.size()).stream()
+					.sorted(Comparator.comparingDouble(Bm25Index.Hit::score).reversed())
+					.toList();
+			assertThat(hits).hasSize(Math.min(10, all.size()));
+			IntStream.range(0, hits.size()).forEach(i ->
+					assertThat(hits.get(i).score()).isCloseTo(all.get(i).score(), within(1e-4f)));
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.collegeproject.chatgptclone.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HnswIndexTests {
+
+	@Test
+	void findsExactMatchFirst() {
+		Random random = new Random(1);
+		HnswIndex index = new HnswIndex(16, 200, 8, 64);
+		float[][] vectors = randomVectors(random, 200, 16);
+		for (float[] vector : vectors) {
+			index.add(vector);
+		}
+
+		List<HnswIndex.Hit> hits = index.search(vectors[123], 3, 32);
+		assertThat(hits).hasSize(3);
+		assertThat(hits.get(0).id()).isEqualTo(123);
+		assertThat(hits.get(0).score()).isCloseTo(1.0f, within(1e-4f));
+		assertThat(hits.get(0).score()).isGreaterThanOrEqualTo(hits.get(1).score());
+	}
+
+	@Test
+	void recallMatchesBruteForce() {
+		Random random = new Random(7);
+		int dimension = 32;
+		float[][] vectors = randomVectors(random, 2000, dimension);
+		HnswIndex index = new HnswIndex(dimension, vectors.length, 16, 100);
+		for (float[] vector : vectors) {
+			index.add(vector);
+		}
+
+		int k = 10;
+		int found = 0;
+		float[][] queries = randomVectors(random, 50, dimension);
+		for (float[] query : queries) {
+			int[] expected = bruteForce(vectors, query, k);
+			List<HnswIndex.Hit> hits = index.search(query, k, 64);
+			for (HnswIndex.Hit hit : hits) {
+				if (Arrays.stream(expected).anyMatch(id -> id == hit.id())) {
+					found++;
+				}
+			}
+		}
+		assertThat((double) found / (queries.length * k)).isGreaterThan(0.9);
+	}
+
+	@Test
+	void indexFileRestoresGraphAndTexts(@TempDir Path dir) throws Exception {
+		Random random = new Random(3);
+		float[][] vectors = randomVectors(random, 300, 8);
+		HnswIndex index = new HnswIndex(8, vectors.length, 8, 64);
+		List<ChunkIndexFile.Chunk> chunks = new ArrayList<>();
+		for (int i = 0; i < vectors.length; i++) {
+			index.add(vectors[i]);
+			chunks.add(new ChunkIndexFile.Chunk(0, i / 10 + 1, "chunk " + i + " \u00e9"));
+		}
+		Path file = dir.resolve("chunks.idx");
+		ChunkIndexFile.write(file, List.of(new SourceFile("notes.pdf", "abc", 1, 2, 0, vectors.length)), chunks, index);
+
+		ChunkIndexFile restored = ChunkIndexFile.open(file);
+		assertThat(restored.chunkCount()).isEqualTo(vectors.length);
+		assertThat(restored.files()).extracting(SourceFile::path).containsExactly("notes.pdf");
+		assertThat(restored.chunk(42)).isEqualTo(new DocumentChunk("notes.pdf (page 5)", "chunk 42 \u00e9"));
+		float[] query = vectors[17];
+		assertThat(restored.index().search(query, 5, 32)).isEqualTo(index.search(query, 5, 32));
+	}
+
+	private static float[][] randomVectors(Random random, int count, int dimension) {
+		float[][] vectors = new float[count][dimension];
+		for (float[] vector : vectors) {
+			for (int i = 0; i < dimension; i++) {
+				vector[i] = (float) random.nextGaussian();
+			}
+		}
+		return vectors;
+	}
+
+	private static int[] bruteForce(float[][] vectors, float[] query, int k) {
+		return IntStream.range(0, vectors.length)
+				.boxed()
+				.sorted((a, b) -> Double.compare(cosine(vectors[b], query), cosine(vectors[a], query)))
+				.limit(k)
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+
+	private static double cosine(float[] a, float[] b) {
+		double dot = 0, na = 0, nb = 0;
+		for (int i = 0; i < a.length; i++) {
+			dot += a[i] * b[i];
+			na += a[i] * a[i];
+			nb += b[i] * b[i];
+		}
+		return dot / Math.sqrt(na * nb);
+	}
+}
@@ -0,0 +1,61 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.config.JwtConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuthTokenServiceTests {
+
+	private final JwtConfig jwtConfig = new JwtConfig();
+	private final SecretKey key = jwtConfig.jwtSigningKey(Base64.getEncoder().encodeToString(new byte[32]));
+
+	@Test
+	void issuedTokenAuthenticatesWithSameAuthoritiesAsFormLogin() {
+		AuthTokenService tokens = new AuthTokenService(authentication -> {
+			if (!"secret".equals(authentication.getCredentials())) {
+				throw new BadCredentialsException("Bad credentials");
+			}
+			return UsernamePasswordAuthenticationToken.authenticated(authentication.getName(), null,
+					AuthorityUtils.createAuthorityList("USER"));
+		}, jwtConfig.jwtEncoder(key), Duration.ofHours(1), "chatsphere");
+
+		Map<String, Object> response = tokens.issueToken("alice", "secret");
+		assertThat(response).containsEntry("tokenType", "Bearer").containsEntry("expiresIn", 3600L);
+
+		JwtDecoder decoder = jwtConfig.jwtDecoder(key);
+		Jwt jwt = decoder.decode((String) response.get("token"));
+		Authentication authentication = jwtConfig.jwtAuthenticationConverter().convert(jwt);
+		assertThat(authentication.getName()).isEqualTo("alice");
+		assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+
+		assertThatThrownBy(() -> tokens.issueToken("alice", "wrong")).isInstanceOf(BadCredentialsException.class);
+	}
+
+	@Test
+	void cachedUserKeepsPasswordWhenReturnedCopyIsErased() {
+		UserDetailsCache cache = new UserDetailsCache(Duration.ofMinutes(1), 100);
+		cache.putUserInCache(User.withUsername("alice").password("$2a$10$hash").authorities("USER").build());
+
+		UserDetails first = cache.getUserFromCache("alice");
+		((User) first).eraseCredentials(); // What ProviderManager does after a successful login
+
+		assertThat(cache.getUserFromCache("alice").getPassword()).isEqualTo("$2a$10$hash");
+		assertThat(cache.getUserFromCache("bob")).isNull();
+	}
+}
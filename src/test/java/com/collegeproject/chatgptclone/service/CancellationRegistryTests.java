@@ -0,0 +1,59 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.service.CancellationBackplane.RequestKey;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CancellationRegistryTests {
+
+	private final InMemoryCancellationBackplane backplane = new InMemoryCancellationBackplane();
+	private final CancellationRegistry nodeA = new CancellationRegistry(Duration.ofMinutes(10), 100, backplane, "a");
+	private final CancellationRegistry nodeB = new CancellationRegistry(Duration.ofMinutes(10), 100, backplane, "b");
+
+	@Test
+	void cancelReachesTheNodeRunningTheRequest() {
+		AtomicBoolean aborted = new AtomicBoolean();
+		try (CancellationRegistry.InFlightRequest request = nodeB.register("alice", "r1")) {
+			request.onCancel(() -> aborted.set(true));
+			assertThat(backplane.findOwner(new RequestKey("alice", "r1"))).contains("b");
+
+			assertThat(nodeA.cancel("alice", "r1")).isTrue();
+			assertThat(request.isCancelled()).isTrue();
+			assertThat(aborted).isTrue();
+		}
+		assertThat(backplane.findOwner(new RequestKey("alice", "r1"))).isEmpty();
+		assertThat(nodeA.getPublishedCancelCount()).isEqualTo(1);
+		assertThat(nodeB.getReceivedCancelCount()).isEqualTo(1);
+	}
+
+	@Test
+	void earlyCancelIsKeptOnEveryNode() {
+		assertThat(nodeA.cancel("alice", "r2")).isFalse(); // Not running anywhere yet
+
+		try (CancellationRegistry.InFlightRequest request = nodeB.register("alice", "r2")) {
+			assertThat(request.isCancelled()).isTrue();
+		}
+		assertThat(nodeB.getPendingCancellationCount()).isZero();
+	}
+
+	@Test
+	void usersOnlyCancelTheirOwnRequests() {
+		try (CancellationRegistry.InFlightRequest alice = nodeA.register("alice", "r3");
+				CancellationRegistry.InFlightRequest bob = nodeB.register("bob", "r3")) {
+			assertThat(nodeA.getInFlightCount()).isEqualTo(1);
+			assertThat(backplane.findOwner(new RequestKey("bob", "r3"))).contains("b");
+
+			assertThat(nodeA.cancel("mallory", "r3")).isFalse();
+			assertThat(alice.isCancelled()).isFalse();
+			assertThat(bob.isCancelled()).isFalse();
+
+			assertThat(nodeA.cancel("bob", "r3")).isTrue();
+			assertThat(bob.isCancelled()).isTrue();
+			assertThat(alice.isCancelled()).isFalse();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatCursor;
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.model.ChatMessageBucket;
+import com.collegeproject.chatgptclone.repository.ChatArchiveRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatArchiveServiceTests {
+
+	private final Map<String, ChatMessageBucket> buckets = new LinkedHashMap<>();
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+	private final ChatArchiveService archive = new ChatArchiveService(null, bucketRepository(), null, objectMapper,
+			false, Duration.ofDays(90), Duration.ofHours(6), 3, DataSize.ofMegabytes(4));
+
+	@Test
+	void pagesBackwardsAndForwardsAcrossBuckets() {
+		List<ChatMessage> messages = messages(7);
+		store(messages.subList(0, 3));
+		store(messages.subList(3, 6));
+		store(messages.subList(6, 7));
+
+		List<ChatMessage> newest = archive.findBefore("alice", null, 4);
+		assertThat(newest).extracting(ChatMessage::getMessage).containsExactly("m6", "m5", "m4", "m3");
+
+		List<ChatMessage> older = archive.findBefore("alice", ChatCursor.of(newest.get(3)), 4);
+		assertThat(older).extracting(ChatMessage::getMessage).containsExactly("m2", "m1", "m0");
+
+		List<ChatMessage> after = archive.findAfter("alice", ChatCursor.of(messages.get(1)), 3);
+		assertThat(after).extracting(ChatMessage::getMessage).containsExactly("m2", "m3", "m4");
+
+		assertThat(archive.findAll("alice")).extracting(ChatMessage::getMessage)
+				.containsExactly("m0", "m1", "m2", "m3", "m4", "m5", "m6");
+		assertThat(archive.findLatestCursor("alice")).contains(ChatCursor.of(messages.get(6)));
+	}
+
+	@Test
+	void bucketRoundTripsMessagesAndIndexesTheirIds() {
+		List<ChatMessage> messages = messages(2);
+		messages.get(1).setImageId("abc123");
+		ChatMessageBucket bucket = archive.toBucket("alice", YearMonth.of(2025, 1), messages);
+		buckets.put(bucket.getId(), bucket);
+
+		assertThat(bucket.getMessageIds()).containsExactly(messages.get(0).getId(), messages.get(1).getId());
+		assertThat(bucket.getImageIds()).containsExactly("abc123");
+		assertThat(bucket.getMessages().length).isLessThan(bucket.getRawSize());
+		assertThat(archive.findMessage("alice", messages.get(1).getId())).get()
+				.isEqualTo(messages.get(1));
+	}
+
+	@Test
+	void sizeEstimateBoundsTheBucketJson() {
+		List<ChatMessage> messages = messages(2);
+		messages.get(0).setMessage("ünïcödé ".repeat(1000));
+		messages.get(1).setImageBase64("QUJD".repeat(50_000)); // Legacy inline image
+		long estimate = messages.stream().mapToLong(ChatArchiveService::estimateSize).sum();
+
+		assertThat((long) archive.toBucket("alice", YearMonth.of(2025, 1), messages).getRawSize())
+				.isLessThanOrEqualTo(estimate);
+	}
+
+	private void store(List<ChatMessage> run) {
+		ChatMessageBucket bucket = archive.toBucket("alice", YearMonth.of(2025, 1), run);
+		buckets.put(bucket.getId(), bucket);
+	}
+
+	/**
+	 * Messages m0..m(n-1), one minute apart, with increasing ObjectId-like ids.
+	 */
+	private static List<ChatMessage> messages(int count) {
+		List<ChatMessage> messages = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ChatMessage message = new ChatMessage("alice", i % 2 == 0 ? "user" : "bot", "m" + i);
+			message.setId(String.format("65a0000000000000000000%02x", i));
+			message.setTimestamp(LocalDateTime.of(2025, 1, 10, 12, 0).plusMinutes(i));
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	/**
+	 * In-memory ChatArchiveRepository for the queries ChatArchiveService reads with.
+	 */
+	private ChatArchiveRepository bucketRepository() {
+		return (ChatArchiveRepository) Proxy.newProxyInstance(ChatArchiveRepository.class.getClassLoader(),
+				new Class<?>[] {ChatArchiveRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "findSummariesByUserId" -> {
+						Sort.Order order = ((Sort) args[1]).iterator().next();
+						Comparator<ChatMessageBucket> comparator = order.getProperty().startsWith("first")
+								? Comparator.comparing(ChatMessageBucket::firstCursor)
+								: Comparator.comparing(ChatMessageBucket::lastCursor);
+						yield buckets.values().stream()
+								.filter(bucket -> bucket.getUserId().equals(args[0]))
+								.sorted(order.isAscending() ? comparator : comparator.reversed())
+								.map(ChatArchiveServiceTests::summary)
+								.toList();
+					}
+					case "findById" -> Optional.ofNullable(buckets.get((String) args[0]));
+					case "findFirstByUserIdAndMessageIds" -> buckets.values().stream()
+							.filter(bucket -> bucket.getUserId().equals(args[0])
+									&& bucket.getMessageIds().contains((String) args[1]))
+							.findFirst();
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "equals" -> proxy == args[0];
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	private static ChatMessageBucket summary(ChatMessageBucket bucket) {
+		ChatMessageBucket summary = new ChatMessageBucket();
+		summary.setId(bucket.getId());
+		summary.setUserId(bucket.getUserId());
+		summary.setFirstTimestamp(bucket.getFirstTimestamp());
+		summary.setFirstId(bucket.getFirstId());
+		summary.setLastTimestamp(bucket.getLastTimestamp());
+		summary.setLastId(bucket.getLastId());
+		return summary;
+	}
+}
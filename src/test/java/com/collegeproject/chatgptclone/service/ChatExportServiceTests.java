@@ -0,0 +1,107 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.model.ChatMessageBucket;
+import com.collegeproject.chatgptclone.repository.ChatArchiveRepository;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatExportServiceTests {
+
+	// As configured by Spring Boot: dates as ISO strings
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+	private final List<ChatMessage> messages = messages(5);
+	private final List<String> liveQueries = new ArrayList<>();
+	private ChatMessageBucket bucket;
+
+	@Test
+	void writesArchivedThenLiveMessagesAsNdjsonWithoutDuplicates() throws IOException {
+		ChatArchiveService archive = new ChatArchiveService(null, archiveRepository(), null, objectMapper, false,
+				Duration.ofDays(90), Duration.ofHours(6), 500, DataSize.ofMegabytes(4));
+		bucket = archive.toBucket("alice", YearMonth.of(2025, 1), messages.subList(0, 3));
+		messages.get(4).setImageBase64("aGVsbG8="); // Legacy inline image
+		ChatExportService exporter = new ChatExportService(chatRepository(), archive, null, objectMapper);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// m2 is in both tiers (compaction interrupted after writing the bucket)
+		assertThat(exporter.export("alice", true, out)).isEqualTo(5);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertThat(lines).hasSize(5);
+		List<JsonNode> rows = new ArrayList<>();
+		for (String line : lines) {
+			rows.add(objectMapper.readTree(line));
+		}
+		assertThat(rows).extracting(row -> row.get("message").asText()).containsExactly("m0", "m1", "m2", "m3", "m4");
+		assertThat(rows.get(0).get("timestamp").asText()).isEqualTo("2025-01-10T12:00:00");
+		assertThat(rows.get(4).get("image").asText()).isEqualTo("aGVsbG8=");
+		assertThat(rows.get(3).has("image")).isFalse();
+		assertThat(liveQueries).containsExactly("streamByUserId");
+
+		exporter.export("alice", false, new ByteArrayOutputStream());
+		assertThat(liveQueries).containsExactly("streamByUserId", "streamWithoutImagesByUserId");
+	}
+
+	/**
+	 * Messages m0..m(n-1), one minute apart, with increasing ObjectId-like ids.
+	 */
+	private static List<ChatMessage> messages(int count) {
+		List<ChatMessage> messages = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ChatMessage message = new ChatMessage("alice", i % 2 == 0 ? "user" : "bot", "m" + i);
+			message.setId(String.format("65a0000000000000000000%02x", i));
+			message.setTimestamp(LocalDateTime.of(2025, 1, 10, 12, 0).plusMinutes(i));
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	/**
+	 * Live collection holding m2..m4, for the streaming queries.
+	 */
+	private ChatRepository chatRepository() {
+		return (ChatRepository) Proxy.newProxyInstance(ChatRepository.class.getClassLoader(),
+				new Class<?>[] {ChatRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "streamByUserId", "streamWithoutImagesByUserId" -> {
+						liveQueries.add(method.getName());
+						yield Stream.of(messages.get(2), messages.get(3), messages.get(4));
+					}
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "equals" -> proxy == args[0];
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	/**
+	 * Archive holding the single bucket m0..m2.
+	 */
+	private ChatArchiveRepository archiveRepository() {
+		return (ChatArchiveRepository) Proxy.newProxyInstance(ChatArchiveRepository.class.getClassLoader(),
+				new Class<?>[] {ChatArchiveRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+					case "findSummariesByUserId" -> List.of(bucket);
+					case "existsByUserIdAndMessageIds" -> bucket.getMessageIds().contains((String) args[1]);
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "equals" -> proxy == args[0];
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
@@ -0,0 +1,67 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatMessageWriterTests {
+
+	private final Map<String, ChatMessage> stored = new ConcurrentHashMap<>();
+
+	@Test
+	void retryAfterPartialBulkInsertDoesNotDuplicateMessages() throws Exception {
+		ChatMessageWriter writer = new ChatMessageWriter(failingAfterFirstInsert(), true, true, 10,
+				Duration.ofMillis(200), 100, Duration.ofMillis(50));
+		try {
+			CompletableFuture<Void> first = CompletableFuture.runAsync(
+					() -> writer.save(new ChatMessage("alice", "user", "question")));
+			CompletableFuture<Void> second = CompletableFuture.runAsync(
+					() -> writer.save(new ChatMessage("alice", "bot", "answer")));
+			CompletableFuture.allOf(first, second).join();
+		} finally {
+			writer.shutdown();
+		}
+		assertThat(stored.values()).extracting(ChatMessage::getMessage)
+				.containsExactlyInAnyOrder("question", "answer");
+	}
+
+	/**
+	 * Like an ordered bulk insert that fails after the first document; save() upserts by id,
+	 * and (like MongoDB) gives messages without an id a new one.
+	 */
+	@SuppressWarnings("unchecked")
+	private ChatRepository failingAfterFirstInsert() {
+		return (ChatRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ChatRepository.class }, (proxy, method, args) -> switch (method.getName()) {
+					case "insert" -> {
+						Iterator<ChatMessage> it = ((Iterable<ChatMessage>) args[0]).iterator();
+						ChatMessage message = it.next();
+						// Generated ids only reach the entities once the whole insert succeeded
+						stored.put(message.getId() != null ? message.getId() : new ObjectId().toHexString(), message);
+						if (it.hasNext()) {
+							throw new IllegalStateException("connection reset");
+						}
+						yield null;
+					}
+					case "save" -> {
+						ChatMessage message = (ChatMessage) args[0];
+						if (message.getId() == null) {
+							message.setId(new ObjectId().toHexString());
+						}
+						stored.put(message.getId(), message);
+						yield message;
+					}
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
@@ -0,0 +1,117 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.collegeproject.chatgptclone.model.ChatMessage;
+import com.collegeproject.chatgptclone.repository.ChatRepository;
+import com.collegeproject.chatgptclone.retrieval.DocumentIngestionService;
+import com.collegeproject.chatgptclone.retrieval.RetrievalService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatServiceTests {
+
+	@TempDir
+	Path documents;
+
+	private final LlmAdmissionScheduler scheduler = new LlmAdmissionScheduler(1, 10, 10);
+	private final AtomicInteger llmCalls = new AtomicInteger();
+
+	@Test
+	void failedSaveGivesTheLlmSlotBack() {
+		ChatService chatService = chatService(repository(Map.of(), true));
+
+		assertThatThrownBy(() -> chatService.sendMessage("alice", "What is dependency injection?", "r1",
+				(ImageUpload) null)).hasMessageContaining("MongoDB down");
+		assertThat(scheduler.getActive()).isZero();
+
+		CompletableFuture<LlmAdmissionScheduler.Permit> admission = chatService.reserveLlmSlot("alice");
+		assertThatThrownBy(() -> chatService.streamMessage("alice", "What is dependency injection?", "r2",
+				(ImageUpload) null, admission, token -> {
+				})).hasMessageContaining("MongoDB down");
+		assertThat(scheduler.getActive()).isZero();
+	}
+
+	@Test
+	void cachedAnswersAreOnlySharedBetweenIdenticalConversations() {
+		ChatService chatService = chatService(repository(Map.of(
+				"alice", List.of(new ChatMessage("alice", "bot", "Spring Boot auto-configures Spring."),
+						new ChatMessage("alice", "user", "What is Spring Boot?")),
+				"bob", List.of(new ChatMessage("bob", "bot", "Django is a Python web framework."),
+						new ChatMessage("bob", "user", "What is Django?"))), false));
+
+		String followUp = "Can you explain that in more detail?";
+		String forAlice = chatService.sendMessage("alice", followUp, "r1", (ImageUpload) null);
+		String forBob = chatService.sendMessage("bob", followUp, "r2", (ImageUpload) null);
+		assertThat(forBob).isNotEqualTo(forAlice);
+		assertThat(llmCalls).hasValue(2);
+
+		// Without earlier turns the answer only depends on the question
+		String question = "What is dependency injection?";
+		String forCarol = chatService.sendMessage("carol", question, "r3", (ImageUpload) null);
+		assertThat(chatService.sendMessage("dave", question, "r4", (ImageUpload) null)).isEqualTo(forCarol);
+		assertThat(llmCalls).hasValue(3);
+	}
+
+	private ChatService chatService(ChatRepository repository) {
+		LlmClient llmClient = new LlmClient(new ObjectMapper(), "http://127.0.0.1:5000", Duration.ofSeconds(1),
+				Duration.ofSeconds(1), false, 2, 3, Duration.ofSeconds(30), Duration.ZERO, Duration.ofSeconds(1)) {
+			@Override
+			public String predictStream(Map<String, Object> requestBody, String affinityKey,
+					Consumer<String> onToken, Consumer<Runnable> registerAbort) {
+				onToken.accept("Answer " + llmCalls.incrementAndGet());
+				return null;
+			}
+		};
+		LlmResponseCache responseCache = new LlmResponseCache(true, 100, Duration.ofMinutes(1), 12);
+		DocumentIngestionService ingestion = new DocumentIngestionService(llmClient, documents,
+				documents.resolve("chunks.idx"), 1000, 200, 64, 1, 16, 200);
+		RetrievalService retrieval = new RetrievalService(llmClient, ingestion, responseCache,
+				new SimpleAsyncTaskExecutor(), false, 3, 64, false, 10, 60, 1.2f, 0.75f, Duration.ofSeconds(1), 100);
+		return new ChatService(repository,
+				new ChatMessageWriter(repository, false, false, 100, Duration.ofMillis(200), 100,
+						Duration.ofMillis(50)),
+				llmClient, scheduler,
+				new CancellationRegistry(Duration.ofMinutes(10), 100, new InMemoryCancellationBackplane(), "test"),
+				new ImageStore(null), new RecentConversationCache(repository, 5, 100), responseCache, retrieval,
+				new ChatMetrics(new SimpleMeterRegistry()), new LlmRequestCoalescer(true, 12), null,
+				new ImagePreprocessor(true, false, 672, 1344, true, 0.85f, 1, 32, Duration.ofSeconds(10)));
+	}
+
+	/**
+	 * A ChatRepository whose finders return the user's {@code histories} entry (newest first),
+	 * and whose writes succeed or, with {@code failSaves}, fail.
+	 */
+	private static ChatRepository repository(Map<String, List<ChatMessage>> histories, boolean failSaves) {
+		return (ChatRepository) Proxy.newProxyInstance(ChatRepository.class.getClassLoader(),
+				new Class<?>[] { ChatRepository.class }, (proxy, method, args) -> {
+					String name = method.getName();
+					if (name.equals("save") || name.equals("insert")) {
+						if (failSaves) {
+							throw new IllegalStateException("MongoDB down");
+						}
+						return args[0];
+					}
+					if (name.startsWith("find") && List.class.isAssignableFrom(method.getReturnType())) {
+						return histories.getOrDefault((String) args[0], List.of());
+					}
+					if (name.equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					return null;
+				});
+	}
+}
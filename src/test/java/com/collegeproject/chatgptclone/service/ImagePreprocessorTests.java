@@ -0,0 +1,85 @@
+package com.collegeproject.chatgptclone.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImagePreprocessorTests {
+
+	private final ImagePreprocessor preprocessor = new ImagePreprocessor(true, false, 672, 1344, true, 0.85f, 1, 4,
+			Duration.ofSeconds(30));
+
+	@Test
+	void downscalesLargeImagesAndPassesSmallOnesThrough() throws IOException {
+		byte[] jpeg = encode(noise(3000, 2000, BufferedImage.TYPE_INT_RGB), "jpeg");
+		// Spooled to disk, as a large multipart upload would be
+		try (ImageUpload photo = ImageUpload.fromStream(new ByteArrayInputStream(jpeg), 1024)) {
+			assertThat(photo.isOnDisk()).isTrue();
+			ImageUpload processed = preprocessor.process(photo, false);
+			BufferedImage result = read(processed);
+			assertThat(result.getWidth()).isEqualTo(672);
+			assertThat(result.getHeight()).isEqualTo(448);
+			assertThat(processed.size()).isLessThan(photo.size());
+
+			BufferedImage transcribed = read(preprocessor.process(photo, true));
+			assertThat(transcribed.getWidth()).isEqualTo(1344);
+			assertThat(transcribed.getColorModel().getNumComponents()).isEqualTo(1); // Grayscale
+		}
+
+		ImageUpload icon = ImageUpload.ofBytes(encode(noise(200, 100, BufferedImage.TYPE_INT_ARGB), "png"));
+		assertThat(preprocessor.process(icon, false)).isSameAs(icon);
+		ImageUpload notAnImage = ImageUpload.ofBytes("hello".getBytes());
+		assertThat(preprocessor.process(notAnImage, false)).isSameAs(notAnImage);
+	}
+
+	@Test
+	void readsExifOrientation() {
+		// SOI, APP1 "Exif\0\0", big-endian TIFF header, IFD0 with one entry: Orientation (SHORT) = 6
+		byte[] jpeg = {
+				(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, 0x00, 0x22,
+				'E', 'x', 'i', 'f', 0, 0,
+				'M', 'M', 0x00, 0x2A, 0x00, 0x00, 0x00, 0x08,
+				0x00, 0x01,
+				0x01, 0x12, 0x00, 0x03, 0x00, 0x00, 0x00, 0x01, 0x00, 0x06, 0x00, 0x00,
+				0x00, 0x00, 0x00, 0x00,
+				(byte) 0xFF, (byte) 0xDA, 0x00, 0x02 };
+		assertThat(ImagePreprocessor.exifOrientation(jpeg)).isEqualTo(6);
+		assertThat(ImagePreprocessor.exifOrientation(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA }))
+				.isEqualTo(1);
+	}
+
+	private static BufferedImage noise(int width, int height, int type) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		Graphics2D g = image.createGraphics();
+		Random random = new Random(42);
+		for (int i = 0; i < 400; i++) {
+			g.setColor(new Color(random.nextInt(0xFFFFFF)));
+			g.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(200), 20 + random.nextInt(200));
+		}
+		g.dispose();
+		return image;
+	}
+
+	private static BufferedImage read(ImageUpload upload) throws IOException {
+		try (InputStream in = upload.openStream()) {
+			return ImageIO.read(in);
+		}
+	}
+
+	private static byte[] encode(BufferedImage image, String format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, format, out);
+		return out.toByteArray();
+	}
+}
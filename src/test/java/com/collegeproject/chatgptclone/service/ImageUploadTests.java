@@ -0,0 +1,56 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageUploadTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void keepsSmallUploadsInMemoryAndSpoolsLargeOnes() throws IOException {
+		byte[] content = new byte[100_000];
+		new Random(7).nextBytes(content);
+
+		try (ImageUpload small = ImageUpload.fromStream(new ByteArrayInputStream(content), content.length)) {
+			assertThat(small.isOnDisk()).isFalse();
+			assertThat(small.sha256()).isEqualTo(ImageStore.sha256(content));
+		}
+
+		ImageUpload large = ImageUpload.fromStream(new ByteArrayInputStream(content), 4096);
+		try (large) {
+			assertThat(large.isOnDisk()).isTrue();
+			assertThat(large.size()).isEqualTo(content.length);
+			assertThat(large.sha256()).isEqualTo(ImageStore.sha256(content));
+			assertThat(large.head()).hasSizeLessThan(content.length).startsWith(content[0], content[1], content[2]);
+			try (InputStream in = large.openStream()) {
+				assertThat(in.readAllBytes()).isEqualTo(content);
+			}
+		}
+		assertThatThrownBy(large::openStream).isInstanceOf(NoSuchFileException.class); // Temp file deleted
+	}
+
+	@Test
+	void serializesAsBase64() throws IOException {
+		byte[] content = new byte[50_000];
+		new Random(11).nextBytes(content);
+		String expected = Base64.getEncoder().encodeToString(content);
+
+		try (ImageUpload large = ImageUpload.fromStream(new ByteArrayInputStream(content), 1024)) {
+			Map<?, ?> json = objectMapper.readValue(objectMapper.writeValueAsBytes(Map.of("image", large)), Map.class);
+			assertThat(json.get("image")).isEqualTo(expected);
+		}
+		assertThat(objectMapper.writeValueAsString(ImageUpload.ofBytes(content))).isEqualTo('"' + expected + '"');
+	}
+}
@@ -0,0 +1,59 @@
+package com.collegeproject.chatgptclone.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmAdmissionSchedulerTests {
+
+	@Test
+	void servesWaitingUsersRoundRobin() {
+		LlmAdmissionScheduler scheduler = new LlmAdmissionScheduler(1, 10, 5);
+		LlmAdmissionScheduler.Permit running = scheduler.enqueue("alice").join();
+
+		CompletableFuture<LlmAdmissionScheduler.Permit> alice2 = scheduler.enqueue("alice");
+		CompletableFuture<LlmAdmissionScheduler.Permit> alice3 = scheduler.enqueue("alice");
+		CompletableFuture<LlmAdmissionScheduler.Permit> bob1 = scheduler.enqueue("bob");
+		assertThat(scheduler.getQueueDepth()).isEqualTo(3);
+
+		running.close();
+		assertThat(alice2).isDone();
+		assertThat(bob1).isNotDone();
+
+		alice2.join().close();
+		assertThat(bob1).isDone(); // bob is served before alice's second queued request
+		assertThat(alice3).isNotDone();
+
+		bob1.join().close();
+		assertThat(alice3).isDone();
+		alice3.join().close();
+		assertThat(scheduler.getActive()).isZero();
+	}
+
+	@Test
+	void rejectsWhenUserQueueIsFull() {
+		LlmAdmissionScheduler scheduler = new LlmAdmissionScheduler(1, 10, 1);
+		scheduler.enqueue("alice").join();
+		scheduler.enqueue("alice");
+
+		assertThatThrownBy(() -> scheduler.enqueue("alice"))
+				.isInstanceOf(AdmissionRejectedException.class);
+		assertThat(scheduler.enqueue("bob")).isNotDone();
+	}
+
+	@Test
+	void cancelledWaiterLeavesTheQueue() {
+		LlmAdmissionScheduler scheduler = new LlmAdmissionScheduler(1, 10, 5);
+		LlmAdmissionScheduler.Permit running = scheduler.enqueue("alice").join();
+		CompletableFuture<LlmAdmissionScheduler.Permit> waiting = scheduler.enqueue("bob");
+
+		waiting.cancel(false);
+		assertThat(scheduler.getQueueDepth()).isZero();
+
+		running.close();
+		assertThat(scheduler.getActive()).isZero();
+	}
+}
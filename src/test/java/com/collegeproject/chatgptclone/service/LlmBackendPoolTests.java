@@ -0,0 +1,61 @@
+package com.collegeproject.chatgptclone.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmBackendPoolTests {
+
+	private static final long ONE_HOUR = TimeUnit.HOURS.toNanos(1);
+
+	@Test
+	void picksTheBackendWithFewestOutstandingRequests() {
+		LlmBackend a = new LlmBackend("http://a:5000/", 3, ONE_HOUR);
+		LlmBackend b = new LlmBackend("http://b:5000", 3, ONE_HOUR);
+		LlmBackendPool pool = new LlmBackendPool(List.of(a, b), false, 2);
+
+		LlmBackend first = pool.acquire(null, null);
+		LlmBackend second = pool.acquire(null, null);
+		assertThat(second).isNotSameAs(first);
+		first.release(true, System.nanoTime());
+		assertThat(pool.acquire(null, null)).isSameAs(first);
+		assertThat(a.getBaseUri().toString()).isEqualTo("http://a:5000");
+	}
+
+	@Test
+	void stickyUserLeavesItsHomeOnlyWhenItIsTooBusy() {
+		LlmBackend a = new LlmBackend("http://a:5000", 3, ONE_HOUR);
+		LlmBackend b = new LlmBackend("http://b:5000", 3, ONE_HOUR);
+		LlmBackendPool pool = new LlmBackendPool(List.of(a, b), true, 1);
+
+		LlmBackend home = pool.acquire("alice", null);
+		assertThat(pool.acquire("alice", null)).isSameAs(home); // 1 above the other: still within the imbalance
+		assertThat(pool.acquire("alice", null)).isNotSameAs(home); // 2 above: spill over
+	}
+
+	@Test
+	void openCircuitIsSkippedAndHalfOpenAllowsOneTrial() {
+		LlmBackend flaky = new LlmBackend("http://flaky:5000", 2, 0); // Trial allowed right after tripping
+		LlmBackend dead = new LlmBackend("http://dead:5000", 1, ONE_HOUR);
+		LlmBackendPool pool = new LlmBackendPool(List.of(flaky, dead), false, 2);
+
+		assertThat(dead.tryAcquire(System.nanoTime())).isTrue();
+		dead.release(false, System.nanoTime());
+		assertThat(dead.getState()).isEqualTo(LlmBackend.State.OPEN);
+		assertThat(pool.acquire(null, null)).isSameAs(flaky);
+		flaky.release(false, System.nanoTime());
+		assertThat(flaky.getState()).isEqualTo(LlmBackend.State.CLOSED); // One failure is below the threshold
+		assertThat(pool.acquire(null, null)).isSameAs(flaky);
+		flaky.release(false, System.nanoTime());
+		assertThat(flaky.getState()).isEqualTo(LlmBackend.State.OPEN);
+
+		assertThat(pool.acquire(null, null)).isSameAs(flaky);
+		assertThat(flaky.getState()).isEqualTo(LlmBackend.State.HALF_OPEN);
+		assertThat(pool.acquire(null, null)).isNull(); // Trial running, the other circuit still open
+		flaky.release(true, System.nanoTime());
+		assertThat(flaky.getState()).isEqualTo(LlmBackend.State.CLOSED);
+	}
+}
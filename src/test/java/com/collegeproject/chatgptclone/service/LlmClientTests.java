@@ -0,0 +1,65 @@
+package com.collegeproject.chatgptclone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmClientTests {
+
+	private final CountDownLatch serverDone = new CountDownLatch(1);
+	private HttpServer server;
+	private LlmClient client;
+
+	@AfterEach
+	void stop() {
+		serverDone.countDown();
+		if (client != null) {
+			client.shutdown();
+		}
+		if (server != null) {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void streamThatStopsMidwayFailsAfterTheReadTimeout() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/predict", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			out.write("{\"token\": \"Hel\"}\n".getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			try {
+				serverDone.await(30, TimeUnit.SECONDS); // Hangs like a stuck Ollama
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		server.start();
+		client = new LlmClient(new ObjectMapper(), "http://127.0.0.1:" + server.getAddress().getPort(),
+				Duration.ofSeconds(1), Duration.ofMillis(500), false, 2, 3, Duration.ofSeconds(30), Duration.ZERO,
+				Duration.ofSeconds(1));
+
+		StringBuilder tokens = new StringBuilder();
+		long started = System.nanoTime();
+		assertThatThrownBy(() -> client.predictStream(Map.of("message", "hi", "stream", true), null, tokens::append,
+				abort -> {
+				})).isInstanceOf(LlmServiceException.class).hasMessageContaining("sent nothing");
+		assertThat(tokens).hasToString("Hel");
+		assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+	}
+}
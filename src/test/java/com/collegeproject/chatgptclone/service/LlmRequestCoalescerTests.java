@@ -0,0 +1,114 @@
+package com.collegeproject.chatgptclone.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmRequestCoalescerTests {
+
+	private final LlmRequestCoalescer coalescer = new LlmRequestCoalescer(true, 12);
+
+	@Test
+	void identicalPromptsShareTheLeadersAnswer() throws Exception {
+		LlmRequestCoalescer.Key key = coalescer.keyFor("Which of these is a JVM language?", null, null, "ctx");
+		assertThat(coalescer.keyFor("which of these is a JVM language", null, null, "ctx")).isEqualTo(key);
+		assertThat(coalescer.keyFor("and why?", null, null, "ctx")).isNull();
+		assertThat(coalescer.keyFor("Which of these is a JVM language?", null, "other history", "ctx"))
+				.isNotEqualTo(key);
+
+		LlmRequestCoalescer.Participant leader = coalescer.join(key, "r1", null);
+		LlmRequestCoalescer.Participant follower = coalescer.join(key, "r2", null);
+		assertThat(leader.isLeader()).isTrue();
+		assertThat(follower.isLeader()).isFalse();
+
+		leader.complete("Kotlin");
+		assertThat(follower.await()).isEqualTo("Kotlin");
+		assertThat(coalescer.join(key, "r3", null).isLeader()).isTrue(); // Finished: the next one starts anew
+	}
+
+	@Test
+	void sharedCallIsAbortedOnlyWhenEveryoneCancelled() {
+		LlmRequestCoalescer.Key key = coalescer.keyFor("Which of these is a JVM language?", null, null, null);
+		LlmRequestCoalescer.Participant leader = coalescer.join(key, "r1", null);
+		LlmRequestCoalescer.Participant follower = coalescer.join(key, "r2", null);
+		AtomicBoolean aborted = new AtomicBoolean();
+		leader.flight().onCancel(() -> aborted.set(true));
+
+		follower.cancel();
+		assertThatThrownBy(follower::await).isInstanceOf(CancellationException.class);
+		assertThat(aborted).isFalse();
+
+		LlmRequestCoalescer.Participant late = coalescer.join(key, "r3", null);
+		leader.cancel();
+		assertThat(aborted).isFalse(); // r3 still waits for the answer
+
+		late.cancel();
+		assertThat(aborted).isTrue();
+		assertThat(leader.flight().isCancelled()).isTrue();
+		assertThat(coalescer.getInFlightCount()).isZero();
+	}
+
+	@Test
+	void streamingFollowerCatchesUpOnEarlierTokens() throws Exception {
+		LlmRequestCoalescer.Key key = coalescer.keyFor("Which of these is a JVM language?", null, null, null);
+		StringBuilder leaderTokens = new StringBuilder();
+		StringBuilder followerTokens = new StringBuilder();
+		LlmRequestCoalescer.Participant leader = coalescer.join(key, "r1", leaderTokens::append);
+		leader.emit("Kot");
+
+		LlmRequestCoalescer.Participant follower = coalescer.join(key, "r2", followerTokens::append);
+		leader.emit("lin");
+		leader.complete("Kotlin");
+
+		assertThat(follower.await()).isEqualTo("Kotlin");
+		assertThat(leaderTokens).hasToString("Kotlin");
+		assertThat(followerTokens).hasToString("Kotlin");
+		assertThat(follower.receivedTokens()).isTrue();
+	}
+
+	@Test
+	void stalledFollowerDoesNotHoldUpTheLeader() throws Exception {
+		LlmRequestCoalescer.Key key = coalescer.keyFor("Which of these is a JVM language?", null, null, null);
+		CountDownLatch clientReads = new CountDownLatch(1);
+		StringBuilder followerTokens = new StringBuilder();
+		LlmRequestCoalescer.Participant leader = coalescer.join(key, "r1", token -> {
+		});
+		LlmRequestCoalescer.Participant follower = coalescer.join(key, "r2", token -> {
+			awaitQuietly(clientReads); // A client whose socket buffer is full
+			followerTokens.append(token);
+		});
+		CompletableFuture<String> followerAnswer = CompletableFuture.supplyAsync(() -> {
+			try {
+				return follower.await();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		CompletableFuture<Void> leaderRun = CompletableFuture.runAsync(() -> {
+			leader.emit("Kot");
+			leader.emit("lin");
+			leader.complete("Kotlin");
+		});
+		leaderRun.get(5, TimeUnit.SECONDS); // Would time out if emit wrote to the follower itself
+
+		clientReads.countDown();
+		assertThat(followerAnswer.get(5, TimeUnit.SECONDS)).isEqualTo("Kotlin");
+		assertThat(followerTokens).hasToString("Kotlin");
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}